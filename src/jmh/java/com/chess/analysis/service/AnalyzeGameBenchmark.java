@@ -0,0 +1,72 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.loadtest.ReplayEngine;
+import com.chess.analysis.model.AnalysisResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-game analysis against {@link ReplayEngine} processes without a
+ * transcript or latency, which answer instantly and deterministically: what
+ * is left is this application's own cost per game (PGN replay, scheduling,
+ * engine I/O and output parsing, classification). The cache is cleared before
+ * every game and the analysis store is off, so each run searches every ply.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnalyzeGameBenchmark {
+
+    @Param({ "ORDERED", "POOLED" })
+    public ChessAnalysisService.SchedulingMode scheduling;
+
+    @Param({ "2" })
+    public int engines;
+
+    private EvaluationCache cache;
+    private StockfishService stockfish;
+    private ChessAnalysisService analysis;
+
+    @Setup
+    public void startEngines() throws Exception {
+        cache = new EvaluationCache(1 << 16, true);
+        SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+        stockfish = new StockfishService(cache, metrics, EngineProperties.defaults()
+                .withPath(ReplayEngine.launcher().toString()).withPoolSize(engines).withInteractiveReserved(0)
+                .withTimeouts(Duration.ofSeconds(30), Duration.ofMinutes(10)));
+        stockfish.initPool();
+        OpeningBookService openingBook = new OpeningBookService();
+        openingBook.loadOpeningBook();
+        AnalysisStore store = new AnalysisStore(null, DataSize.ofBytes(0), metrics);
+        analysis = new ChessAnalysisService(stockfish, openingBook, store, metrics, scheduling, 14, Duration.ZERO,
+                Duration.ofSeconds(60));
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCache() {
+        cache.clear();
+    }
+
+    @TearDown
+    public void stopEngines() {
+        stockfish.destroyPool();
+    }
+
+    @Benchmark
+    public AnalysisResponse analyzeGame() throws Exception {
+        return analysis.analyzeGame(BenchmarkGames.ANNOTATED);
+    }
+}
@@ -0,0 +1,24 @@
+package com.chess.analysis.service;
+
+/** Games shared by the benchmarks. */
+final class BenchmarkGames {
+
+    /** The 29-move miniature used by the tests: a short book phase, then tactics. */
+    static final String MINIATURE = "1. e4 Nf6 2. Nc3 e6 3. Qf3 Ke7 4. Nh3 Ke8 5. e5 Ng8 6. Ng5 Qxg5 7. d3 Qxe5+ 8. Be2 Nc6 9. Bf4 Qf5 10. Nb5 Qxb5 11. d4 Qb4+ 12. c3 Qxb2 13. Rd1 e5 14. Bc1 Qxa2 15. Rd2 Qb1 16. Rd1 e4 17. Qe3 Nf6 18. Bd2 Qa2 19. g4 Nxg4 20. Bxg4 g6 21. Qxe4+ Kd8 22. O-O f5 23. Qe1 fxg4 24. Bg5+ Be7 25. Bxe7+ Nxe7 26. Rd2 Qd5 27. Re2 b5 28. Rxe7 Bb7 29. Re2 Qg2# 0-1";
+
+    /** A full-length game with tags and clock comments, as exported by the big sites. */
+    static final String ANNOTATED = """
+            [Event "Rated Rapid game"]
+            [White "Alice"]
+            [Black "Bob"]
+            [WhiteElo "1850"]
+            [BlackElo "1876"]
+            [TimeControl "600+5"]
+            [Result "0-1"]
+
+            1. d4 { [%clk 0:10:00] } 1... d5 { [%clk 0:10:00] } 2. c4 { [%clk 0:10:03] } 2... e6 { [%clk 0:10:02] } 3. Nc3 { [%clk 0:10:05] } 3... Nf6 { [%clk 0:10:04] } 4. Bg5 { [%clk 0:10:07] } 4... Be7 { [%clk 0:10:06] } 5. e3 { [%clk 0:10:09] } 5... O-O { [%clk 0:10:08] } 6. Nf3 { [%clk 0:10:10] } 6... Nbd7 { [%clk 0:10:09] } 7. Rc1 { [%clk 0:10:12] } 7... c6 { [%clk 0:10:10] } 8. Bd3 { [%clk 0:10:11] } 8... dxc4 { [%clk 0:10:03] } 9. Bxc4 { [%clk 0:10:14] } 9... Nd5 { [%clk 0:09:58] } 10. Bxe7 { [%clk 0:10:15] } 10... Qxe7 { [%clk 0:10:01] } 11. O-O { [%clk 0:10:17] } 11... Nxc3 { [%clk 0:09:55] } 12. Rxc3 { [%clk 0:10:19] } 12... e5 { [%clk 0:09:50] } 13. Qc2 { [%clk 0:10:12] } 13... e4 { [%clk 0:09:31] } 14. Nd2 { [%clk 0:10:10] } 14... Nf6 { [%clk 0:09:22] } 15. Re1 { [%clk 0:09:58] } 15... Bf5 { [%clk 0:09:10] } 16. f3 { [%clk 0:09:41] } 16... exf3 { [%clk 0:08:57] } 17. Qxf5 { [%clk 0:09:30] } 17... fxg2 { [%clk 0:08:40] } 18. Kxg2 { [%clk 0:09:28] } 18... Rad8 { [%clk 0:08:31] } 19. Rf1 { [%clk 0:09:12] } 19... Qd6 { [%clk 0:08:02] } 20. Nf3 { [%clk 0:08:58] } 20... Qe7 { [%clk 0:07:40] } 21. Ne5 { [%clk 0:08:40] } 21... Rd6 { [%clk 0:07:11] } 22. Bd3 { [%clk 0:08:22] } 22... Rfd8 { [%clk 0:06:52] } 23. Rc2 { [%clk 0:08:10] } 23... h6 { [%clk 0:06:41] } 24. h4 { [%clk 0:07:58] } 24... Nd5 { [%clk 0:06:20] } 25. Qh5 { [%clk 0:07:31] } 25... Nxe3+ { [%clk 0:06:02] } 26. Kh1 { [%clk 0:07:20] } 26... Nxf1 { [%clk 0:05:58] } 27. Bxf1 { [%clk 0:07:18] } 27... Rxd4 { [%clk 0:05:40] } 28. Nxf7 { [%clk 0:06:51] } 28... Qe1 { [%clk 0:05:12] } 29. Qg6 { [%clk 0:06:30] } 29... Qxf1+ { [%clk 0:05:01] } 30. Kh2 { [%clk 0:06:28] } 30... Rd2+ { [%clk 0:04:49] } 31. Rxd2 { [%clk 0:06:20] } 31... Rxd2+ { [%clk 0:04:47] } 32. Kg3 { [%clk 0:06:18] } 32... Qf2+ { [%clk 0:04:40] } 33. Kg4 { [%clk 0:06:15] } 33... Qxf7 { [%clk 0:04:31] } 34. Qxf7+ { [%clk 0:06:17] } 34... Kxf7 { [%clk 0:04:33] } 0-1
+            """;
+
+    private BenchmarkGames() {
+    }
+}
@@ -0,0 +1,65 @@
+package com.chess.analysis.service;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The material checks behind sacrifice detection, over every position of a
+ * game (as PgnParser runs them once per move while replaying it).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MaterialBenchmark {
+
+    private Board[] boards;
+    private List<Move> moves;
+
+    @Setup
+    public void loadPositions() {
+        PgnParser.ParsedGame game = PgnParser.parse(BenchmarkGames.ANNOTATED);
+        List<String> fens = game.fens();
+        boards = new Board[fens.size()];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new Board();
+            boards[i].loadFromFen(fens.get(i));
+        }
+        moves = new ArrayList<>();
+        Board board = new Board();
+        for (String uci : game.uciMoves()) {
+            Move move = new Move(uci, board.getSideToMove());
+            moves.add(move);
+            board.doMove(move);
+        }
+    }
+
+    @Benchmark
+    public void threat(Blackhole blackhole) {
+        for (Board board : boards) {
+            blackhole.consume(StaticExchange.threat(board));
+        }
+    }
+
+    /** What the replay pays per move on top of doMove: the capture gain, then the exchange threat. */
+    @Benchmark
+    public void sacrificeCheck(Blackhole blackhole) {
+        Board board = new Board();
+        for (Move move : moves) {
+            int gained = StaticExchange.captureGain(board, move);
+            board.doMove(move);
+            blackhole.consume(gained - StaticExchange.threat(board));
+        }
+    }
+}
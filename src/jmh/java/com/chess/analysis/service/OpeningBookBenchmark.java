@@ -0,0 +1,43 @@
+package com.chess.analysis.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Book lookups for every position of a game, in and out of theory, plus opening classification. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpeningBookBenchmark {
+
+    private OpeningBookService openingBook;
+    private PgnParser.ParsedGame game;
+
+    @Setup
+    public void loadBook() {
+        openingBook = new OpeningBookService();
+        openingBook.loadOpeningBook();
+        game = PgnParser.parse(BenchmarkGames.ANNOTATED);
+    }
+
+    @Benchmark
+    public void isBookPosition(Blackhole blackhole) {
+        List<String> fens = game.fens();
+        for (int i = 0; i < fens.size(); i++) {
+            blackhole.consume(openingBook.isBookPosition(fens.get(i)));
+        }
+    }
+
+    @Benchmark
+    public Object classify() {
+        return openingBook.classify(game.uciMoves(), game.fens());
+    }
+}
@@ -0,0 +1,54 @@
+package com.chess.analysis.service;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PGN parsing (which replays the game and records a FEN per ply), and FEN
+ * generation on its own: replaying the already-resolved moves and calling
+ * {@code getFen()} after each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PgnBenchmark {
+
+    @Param({ "MINIATURE", "ANNOTATED" })
+    public String game;
+
+    private String pgn;
+    private List<String> uciMoves;
+
+    @Setup
+    public void selectGame() {
+        pgn = game.equals("MINIATURE") ? BenchmarkGames.MINIATURE : BenchmarkGames.ANNOTATED;
+        uciMoves = PgnParser.parse(pgn).uciMoves();
+    }
+
+    @Benchmark
+    public PgnParser.ParsedGame parse() {
+        return PgnParser.parse(pgn);
+    }
+
+    @Benchmark
+    public void generateFens(Blackhole blackhole) {
+        Board board = new Board();
+        blackhole.consume(board.getFen());
+        for (String uci : uciMoves) {
+            board.doMove(new Move(uci, board.getSideToMove()));
+            blackhole.consume(board.getFen());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.loadtest.ReplayEngine;
+import com.chess.analysis.model.AnalysisResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall time and nodes searched per game for the two scheduling modes of
+ * {@link ChessAnalysisService}, against the engine at STOCKFISH_PATH (the
+ * replay engine when unset, which only shows the scheduling overhead). Each
+ * game gets a fresh engine pool and an empty cache, so no run benefits from
+ * hash entries or evaluations left by the previous one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class SchedulingBenchmark {
+
+    @Param({ "ORDERED", "POOLED" })
+    public ChessAnalysisService.SchedulingMode scheduling;
+
+    @Param({ "0" })
+    public int engines;
+
+    private OpeningBookService openingBook;
+    private StockfishService stockfish;
+    private ChessAnalysisService analysis;
+
+    /** Nodes the engines searched for the game, reported next to the time. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void loadBook() throws Exception {
+        openingBook = new OpeningBookService();
+        openingBook.loadOpeningBook();
+    }
+
+    @Setup(Level.Iteration)
+    public void startEngines() throws Exception {
+        String enginePath = System.getenv("STOCKFISH_PATH");
+        if (enginePath == null || enginePath.isBlank()) {
+            enginePath = ReplayEngine.launcher().toString();
+        }
+        SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+        stockfish = new StockfishService(new EvaluationCache(1 << 16, true), metrics, EngineProperties.defaults()
+                .withPath(enginePath).withPoolSize(engines).withInteractiveReserved(0)
+                .withTimeouts(Duration.ofSeconds(30), Duration.ofMinutes(10)));
+        stockfish.initPool();
+        analysis = new ChessAnalysisService(stockfish, openingBook, new AnalysisStore(null, DataSize.ofBytes(0),
+                metrics), metrics, scheduling, 14, Duration.ZERO, Duration.ofSeconds(60));
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopEngines() {
+        stockfish.destroyPool();
+    }
+
+    @Benchmark
+    public AnalysisResponse analyzeGame(Nodes nodes) throws Exception {
+        long before = stockfish.getNodesSearched();
+        AnalysisResponse response = analysis.analyzeGame(BenchmarkGames.MINIATURE);
+        nodes.nodes += stockfish.getNodesSearched() - before;
+        return response;
+    }
+}
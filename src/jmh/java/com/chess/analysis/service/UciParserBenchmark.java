@@ -0,0 +1,73 @@
+package com.chess.analysis.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the stdout of one depth-20 search: an info line per depth (with a
+ * growing PV), currmove chatter and the final bestmove.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UciParserBenchmark {
+
+    private final UciParser parser = new UciParser();
+    private byte[] output;
+    private int[] lineEnds;
+
+    @Setup
+    public void writeSearchOutput() {
+        StringBuilder text = new StringBuilder("info string NNUE evaluation using nn-1111cefa1111.nnue enabled\n");
+        String[] line = { "e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "b5a4", "g8f6", "e1g1", "f8e7",
+                "f1e1", "b7b5", "a4b3", "d7d6", "c2c3", "e8g8", "h2h3", "c6a5", "b3c2", "c7c5" };
+        for (int depth = 1; depth <= 20; depth++) {
+            text.append("info depth ").append(depth).append(" seldepth ").append(depth + 4)
+                    .append(" multipv 1 score cp ").append(20 + depth % 7).append(" nodes ").append(depth * 4096L)
+                    .append(" nps 1200000 hashfull ").append(depth * 3).append(" tbhits 0 time ").append(depth * 5)
+                    .append(" pv");
+            for (int i = 0; i < Math.min(depth, line.length); i++) {
+                text.append(' ').append(line[i]);
+            }
+            text.append('\n');
+            text.append("info depth ").append(depth).append(" currmove d2d4 currmovenumber 2\n");
+        }
+        text.append("bestmove e2e4 ponder e7e5\n");
+
+        output = text.toString().getBytes(StandardCharsets.US_ASCII);
+        int lines = 0;
+        for (byte b : output) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        lineEnds = new int[lines];
+        for (int i = 0, n = 0; i < output.length; i++) {
+            if (output[i] == '\n') {
+                lineEnds[n++] = i;
+            }
+        }
+    }
+
+    @Benchmark
+    public UciParser.Message parseSearch() {
+        UciParser.Message last = null;
+        int start = 0;
+        for (int end : lineEnds) {
+            UciParser.Message message = parser.parseLine(output, start, end);
+            if (message != null) {
+                last = message;
+            }
+            start = end + 1;
+        }
+        return last;
+    }
+}
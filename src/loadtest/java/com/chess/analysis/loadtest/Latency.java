@@ -0,0 +1,48 @@
+package com.chess.analysis.loadtest;
+
+import java.util.Random;
+
+/**
+ * How long the replay engine takes for a {@code go depth} search. Specs:
+ * <ul>
+ * <li>{@code fixed:<ms>}</li>
+ * <li>{@code uniform:<minMs>:<maxMs>}</li>
+ * <li>{@code lognormal:<medianMs>:<sigma>}: the long-tailed shape real
+ * searches have</li>
+ * <li>{@code recorded[:<scale>]}: the time the search took when it was
+ * recorded, times scale</li>
+ * </ul>
+ * {@code go movetime} searches always take their movetime, as Stockfish's do.
+ */
+record Latency(Kind kind, double a, double b) {
+
+    enum Kind {
+        FIXED, UNIFORM, LOGNORMAL, RECORDED
+    }
+
+    static Latency parse(String spec) {
+        String[] parts = spec.strip().split(":");
+        try {
+            return switch (parts[0]) {
+                case "fixed" -> new Latency(Kind.FIXED, Double.parseDouble(parts[1]), 0);
+                case "uniform" -> new Latency(Kind.UNIFORM, Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                case "lognormal" ->
+                    new Latency(Kind.LOGNORMAL, Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                case "recorded" -> new Latency(Kind.RECORDED, parts.length > 1 ? Double.parseDouble(parts[1]) : 1, 0);
+                default -> throw new IllegalArgumentException("Unknown latency '" + spec + "'");
+            };
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed latency '" + spec + "'", e);
+        }
+    }
+
+    long sampleMs(Random random, long recordedMs) {
+        double ms = switch (kind) {
+            case FIXED -> a;
+            case UNIFORM -> a + random.nextDouble() * (b - a);
+            case LOGNORMAL -> a * Math.exp(b * random.nextGaussian());
+            case RECORDED -> recordedMs * a;
+        };
+        return Math.max(0, Math.round(ms));
+    }
+}
@@ -0,0 +1,291 @@
+package com.chess.analysis.loadtest;
+
+import com.chess.analysis.service.PgnGameReader;
+import com.chess.analysis.service.PgnParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop HTTP load generator for the {@code ChessController} endpoints:
+ * {@code --concurrency} workers each send one request at a time, picking the
+ * endpoint by {@code --mix} weight and the position or game from the
+ * {@code --pgn} games, until {@code --duration} has passed. Requests that
+ * finish during {@code --warmup} are not counted. Prints throughput and
+ * latency percentiles per endpoint, then the server's engine and cache stats.
+ * <p>
+ * For reproducible numbers, run the server against {@link ReplayEngine}.
+ * Positions repeat across requests, so start the server with a tiny
+ * {@code chess.cache.entries} to measure engine-bound rather than cached
+ * requests.
+ *
+ * <pre>
+ * ./gradlew loadTest -PloadTestArgs="--concurrency 32 --duration 60s --mix evaluate=10,analyze=1"
+ * </pre>
+ */
+public final class LoadTest {
+
+    enum Endpoint {
+        EVALUATE, BESTMOVE, ANALYZE, STREAM
+    }
+
+    private final HttpClient client;
+    private final URI base;
+    private final List<String> games;
+    private final List<String> fens;
+    private final Endpoint[] weighted;
+    private final Long budgetMs;
+
+    LoadTest(URI base, List<String> games, Map<Endpoint, Integer> mix, Long budgetMs) {
+        this.client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.base = base;
+        this.games = games;
+        this.fens = new ArrayList<>();
+        for (String game : games) {
+            fens.addAll(PgnParser.parse(game).fens());
+        }
+        List<Endpoint> endpoints = new ArrayList<>();
+        mix.forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                endpoints.add(endpoint);
+            }
+        });
+        this.weighted = endpoints.toArray(Endpoint[]::new);
+        this.budgetMs = budgetMs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        URI base = URI.create(options.getOrDefault("url", "http://localhost:8080"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+        Duration duration = duration(options.getOrDefault("duration", "60s"));
+        Duration warmup = duration(options.getOrDefault("warmup", "10s"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+        Long budgetMs = options.containsKey("budget-ms") ? Long.valueOf(options.get("budget-ms")) : null;
+        Map<Endpoint, Integer> mix = mix(options.getOrDefault("mix", "evaluate=10,bestmove=5,analyze=1"));
+        List<String> games = games(options.get("pgn"));
+
+        LoadTest test = new LoadTest(base, games, mix, budgetMs);
+        System.out.printf("%s: %d workers, %s (+%s warmup), mix %s, %d games / %d positions%n", base, concurrency,
+                duration, warmup, mix, games.size(), test.fens.size());
+        Map<Endpoint, Samples> results = test.run(concurrency, warmup, duration, seed);
+        report(results, duration);
+        System.out.println("engines: " + test.get("/api/engines/stats"));
+        System.out.println("cache:   " + test.get("/api/cache/stats"));
+    }
+
+    Map<Endpoint, Samples> run(int concurrency, Duration warmup, Duration duration, long seed) throws Exception {
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        List<Future<Map<Endpoint, Samples>>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                Random random = new Random(seed + w);
+                workers.add(executor.submit(() -> work(random, measureFrom, end)));
+            }
+        }
+
+        Map<Endpoint, Samples> merged = new EnumMap<>(Endpoint.class);
+        for (Future<Map<Endpoint, Samples>> worker : workers) {
+            worker.get().forEach((endpoint, samples) -> merged.computeIfAbsent(endpoint, e -> new Samples())
+                    .addAll(samples));
+        }
+        return merged;
+    }
+
+    private Map<Endpoint, Samples> work(Random random, long measureFrom, long end) {
+        Map<Endpoint, Samples> samples = new EnumMap<>(Endpoint.class);
+        while (System.nanoTime() < end) {
+            Endpoint endpoint = weighted[random.nextInt(weighted.length)];
+            long sent = System.nanoTime();
+            boolean ok;
+            try {
+                ok = send(endpoint, random);
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            long done = System.nanoTime();
+            if (sent >= measureFrom && done <= end) {
+                samples.computeIfAbsent(endpoint, e -> new Samples()).add(done - sent, ok);
+            }
+        }
+        return samples;
+    }
+
+    private boolean send(Endpoint endpoint, Random random) throws IOException, InterruptedException {
+        HttpRequest request = switch (endpoint) {
+            case EVALUATE, BESTMOVE -> {
+                String fen = fens.get(random.nextInt(fens.size()));
+                yield HttpRequest.newBuilder(base.resolve(endpoint == Endpoint.EVALUATE ? "/api/evaluate"
+                        : "/api/bestmove"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"fen\": \"" + fen + "\"}"))
+                        .build();
+            }
+            case ANALYZE, STREAM -> {
+                String form = "pgn=" + URLEncoder.encode(games.get(random.nextInt(games.size())),
+                        StandardCharsets.UTF_8) + (budgetMs != null ? "&budgetMs=" + budgetMs : "");
+                yield HttpRequest.newBuilder(base.resolve(endpoint == Endpoint.ANALYZE ? "/analyze"
+                        : "/analyze/stream"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build();
+            }
+        };
+        // The whole body is read, so a streamed analysis counts until its summary event
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() / 100 == 2 && !response.body().startsWith("{\"error\"");
+    }
+
+    private String get(String path) {
+        try {
+            return client.send(HttpRequest.newBuilder(base.resolve(path)).build(),
+                    HttpResponse.BodyHandlers.ofString()).body();
+        } catch (IOException e) {
+            return "unavailable (" + e.getMessage() + ")";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "interrupted";
+        }
+    }
+
+    private static void report(Map<Endpoint, Samples> results, Duration duration) {
+        double seconds = duration.toNanos() / 1e9;
+        System.out.printf("%-9s %8s %7s %9s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        results.forEach((endpoint, samples) -> {
+            long[] sorted = samples.sorted();
+            System.out.printf("%-9s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    endpoint.name().toLowerCase(), sorted.length, samples.errors, sorted.length / seconds,
+                    percentileMs(sorted, 0.50), percentileMs(sorted, 0.90), percentileMs(sorted, 0.99),
+                    percentileMs(sorted, 0.999), percentileMs(sorted, 1.0));
+        });
+    }
+
+    /** Nearest-rank percentile of sorted nanosecond samples, in milliseconds. */
+    static double percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)] / 1e6;
+    }
+
+    /** Latencies (ns) of one endpoint, kept whole so percentiles are exact. */
+    static final class Samples {
+
+        private long[] nanos = new long[1024];
+        private int count;
+        private long errors;
+
+        void add(long latencyNanos, boolean ok) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = latencyNanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.nanos[i], true);
+            }
+            errors += other.errors;
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value pairs, got '" + args[i] + "'");
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static Map<Endpoint, Integer> mix(String spec) {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String part : spec.split(",")) {
+            String[] entry = part.split("=");
+            int weight = entry.length > 1 ? Integer.parseInt(entry[1].strip()) : 1;
+            if (weight > 0) {
+                mix.put(Endpoint.valueOf(entry[0].strip().toUpperCase()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Empty --mix '" + spec + "'");
+        }
+        return mix;
+    }
+
+    /** "500ms", "30s", "2m" or an ISO-8601 duration. */
+    private static Duration duration(String spec) {
+        if (spec.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(spec.substring(0, spec.length() - 2)));
+        }
+        if (spec.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(spec.substring(0, spec.length() - 1)));
+        }
+        if (spec.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(spec.substring(0, spec.length() - 1)));
+        }
+        return Duration.parse(spec);
+    }
+
+    /** Games from {@code --pgn}, or the bundled sample games. */
+    private static List<String> games(String pgnFile) throws IOException {
+        List<String> games = new ArrayList<>();
+        try (InputStream bundled = pgnFile == null ? LoadTest.class.getResourceAsStream("/loadtest/games.pgn") : null;
+                Reader source = pgnFile != null ? Files.newBufferedReader(Path.of(pgnFile), StandardCharsets.UTF_8)
+                        : new InputStreamReader(bundled, StandardCharsets.UTF_8);
+                PgnGameReader reader = new PgnGameReader(source)) {
+            String game;
+            while ((game = reader.nextGame()) != null) {
+                games.add(game);
+            }
+        }
+        if (games.isEmpty()) {
+            throw new IllegalArgumentException("No games in " + (pgnFile != null ? pgnFile : "the sample set"));
+        }
+        return games;
+    }
+}
@@ -0,0 +1,307 @@
+package com.chess.analysis.loadtest;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.move.Move;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in UCI engine for load tests and benchmarks. Point
+ * {@code STOCKFISH_PATH} (or {@code chess.engine.path}) at the script written
+ * by {@code ./gradlew replayEngine}, or by {@link #launcher()}. Configured
+ * through the environment, which the application's engine processes inherit:
+ * <ul>
+ * <li>{@code REPLAY_TRANSCRIPT}: {@link Transcript} file to replay searches
+ * from.</li>
+ * <li>{@code REPLAY_LATENCY}: {@link Latency} of {@code go depth} searches
+ * (default {@code recorded} with a transcript, {@code fixed:0} without).</li>
+ * <li>{@code REPLAY_SEED}: seed for the latency samples (default 1).</li>
+ * <li>{@code REPLAY_RECORD}: path of a real engine. Instead of replaying, the
+ * process then proxies that engine and appends every completed search to
+ * {@code REPLAY_TRANSCRIPT}.</li>
+ * </ul>
+ * Positions missing from the transcript get a synthesized answer: a score and
+ * a legal best move derived from the position's hash, so runs stay
+ * deterministic. Like Stockfish, the engine answers {@code isready} during a
+ * search and {@code stop} ends the search at once.
+ */
+public final class ReplayEngine {
+
+    // Depth reported by synthesized "go movetime" searches
+    private static final int TIMED_DEPTH = 10;
+
+    private final Transcript transcript;
+    private final Latency latency;
+    private final Random random;
+    private final PrintStream out;
+    private final ScheduledExecutorService clock = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replay-clock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Board board = new Board();
+    // Guarded by this: the search whose output is still due
+    private long searchId;
+    private List<String> pendingOutput;
+
+    ReplayEngine(Transcript transcript, Latency latency, long seed, PrintStream out) {
+        this.transcript = transcript;
+        this.latency = latency;
+        this.random = new Random(seed);
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String transcriptFile = System.getenv("REPLAY_TRANSCRIPT");
+        String realEngine = System.getenv("REPLAY_RECORD");
+        if (realEngine != null && !realEngine.isBlank()) {
+            if (transcriptFile == null || transcriptFile.isBlank()) {
+                throw new IllegalArgumentException("REPLAY_RECORD needs REPLAY_TRANSCRIPT to write to");
+            }
+            record(realEngine, Path.of(transcriptFile));
+            return;
+        }
+
+        boolean replaying = transcriptFile != null && !transcriptFile.isBlank();
+        Transcript transcript = replaying ? Transcript.load(Path.of(transcriptFile)) : Transcript.empty();
+        String latencySpec = System.getenv().getOrDefault("REPLAY_LATENCY", replaying ? "recorded" : "fixed:0");
+        long seed = Long.parseLong(System.getenv().getOrDefault("REPLAY_SEED", "1"));
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        new ReplayEngine(transcript, Latency.parse(latencySpec), seed, out)
+                .run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Writes a launcher script for this class on the current classpath, since
+     * {@code chess.engine.path} takes a single executable.
+     */
+    public static Path launcher() throws IOException {
+        Path script = Files.createTempFile("replay-engine", ".sh");
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Files.writeString(script, "#!/bin/sh\nexec '" + java + "' -XX:TieredStopAtLevel=1 -XX:+UseSerialGC -cp '"
+                + System.getProperty("java.class.path") + "' " + ReplayEngine.class.getName() + "\n");
+        script.toFile().setExecutable(true);
+        script.toFile().deleteOnExit();
+        return script;
+    }
+
+    void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals("uci")) {
+                send(List.of("id name ReplayEngine", "uciok"));
+            } else if (line.equals("isready")) {
+                send(List.of("readyok"));
+            } else if (line.startsWith("position ")) {
+                board = position(line);
+            } else if (line.startsWith("go")) {
+                go(line);
+            } else if (line.equals("stop")) {
+                finish(currentSearch());
+            } else if (line.equals("quit")) {
+                break;
+            }
+            // setoption and ucinewgame need no answer
+        }
+        clock.shutdownNow();
+    }
+
+    private void go(String command) {
+        Transcript.Search recorded = transcript.find(board.getFen(), command);
+        List<String> output = recorded != null ? recorded.output() : synthesize(board, depthOf(command));
+        long moveTimeMs = valueOf(command, "movetime");
+        long delayMs = moveTimeMs > 0 ? moveTimeMs
+                : latency.sampleMs(random, recorded != null ? recorded.elapsedMs() : 0);
+
+        long id;
+        synchronized (this) {
+            id = ++searchId;
+            pendingOutput = output;
+        }
+        if (delayMs == 0) {
+            finish(id);
+        } else {
+            clock.schedule(() -> finish(id), delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized long currentSearch() {
+        return searchId;
+    }
+
+    /** Prints the output of search {@code id} unless it was already printed (stopped early). */
+    private synchronized void finish(long id) {
+        if (id == searchId && pendingOutput != null) {
+            send(pendingOutput);
+            pendingOutput = null;
+        }
+    }
+
+    private synchronized void send(List<String> lines) {
+        for (String line : lines) {
+            out.println(line);
+        }
+        out.flush();
+    }
+
+    /** A score and legal best move derived from the position's hash, printed once per depth. */
+    static List<String> synthesize(Board board, int depth) {
+        List<Move> moves = board.legalMoves();
+        if (moves.isEmpty()) {
+            return List.of("info depth 0 score " + (board.isKingAttacked() ? "mate 0" : "cp 0"), "bestmove (none)");
+        }
+        long key = board.getZobristKey();
+        int score = (int) Math.floorMod(key, 301L) - 150;
+        Move best = moves.get((int) Math.floorMod(key >>> 16, (long) moves.size()));
+
+        board.doMove(best);
+        List<Move> replies = board.legalMoves();
+        String pv = replies.isEmpty() ? best.toString()
+                : best + " " + replies.get((int) Math.floorMod(key >>> 32, (long) replies.size()));
+        board.undoMove();
+
+        List<String> output = new ArrayList<>(depth + 1);
+        for (int d = 1; d <= depth; d++) {
+            output.add("info depth " + d + " seldepth " + (d + 2) + " multipv 1 score cp " + score + " nodes "
+                    + d * 1000L + " nps 1000000 time " + d + " pv " + pv);
+        }
+        output.add("bestmove " + best);
+        return output;
+    }
+
+    static Board position(String command) {
+        String[] tokens = command.split(" ");
+        Board board = new Board();
+        int i = 2;
+        if (tokens.length > 1 && tokens[1].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            while (i < tokens.length && !tokens[i].equals("moves")) {
+                fen.append(tokens[i++]).append(' ');
+            }
+            board.loadFromFen(fen.toString().strip());
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                board.doMove(new Move(tokens[i], board.getSideToMove()));
+            }
+        }
+        return board;
+    }
+
+    private static int depthOf(String go) {
+        long depth = valueOf(go, "depth");
+        return depth > 0 ? (int) depth : TIMED_DEPTH;
+    }
+
+    private static long valueOf(String go, String name) {
+        String[] tokens = go.split(" ");
+        for (int i = 0; i < tokens.length - 1; i++) {
+            if (tokens[i].equals(name)) {
+                return Long.parseLong(tokens[i + 1]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Proxies {@code enginePath}, appending each search that ran to completion
+     * (not stopped) to {@code transcriptFile}.
+     */
+    private static void record(String enginePath, Path transcriptFile) throws IOException, InterruptedException {
+        Process engine = new ProcessBuilder(enginePath).redirectErrorStream(true).start();
+        BufferedWriter toEngine = new BufferedWriter(
+                new OutputStreamWriter(engine.getOutputStream(), StandardCharsets.UTF_8));
+        Recording recording = new Recording();
+
+        Thread pump = Thread.ofPlatform().daemon().name("replay-record").start(() -> {
+            try (BufferedReader fromEngine = new BufferedReader(
+                    new InputStreamReader(engine.getInputStream(), StandardCharsets.UTF_8))) {
+                PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+                String line;
+                while ((line = fromEngine.readLine()) != null) {
+                    out.println(line);
+                    out.flush();
+                    recording.onOutput(line, transcriptFile);
+                }
+            } catch (IOException e) {
+                // Engine gone; the application sees EOF on our stdout
+            }
+        });
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        Board board = new Board();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith("position ")) {
+                board = position(line);
+            } else if (line.startsWith("go")) {
+                recording.start(board.getFen(), line);
+            } else if (line.equals("stop")) {
+                recording.stopped();
+            }
+            toEngine.write(line);
+            toEngine.newLine();
+            toEngine.flush();
+            if (line.equals("quit")) {
+                break;
+            }
+        }
+        toEngine.close();
+        engine.waitFor(5, TimeUnit.SECONDS);
+        engine.destroy();
+        pump.join(1000);
+    }
+
+    /** The search being recorded: written by the stdin loop, read by the output pump. */
+    private static final class Recording {
+
+        private String fen;
+        private String go;
+        private long startNanos;
+        private boolean stopped;
+        private final List<String> output = new ArrayList<>();
+
+        synchronized void start(String fen, String go) {
+            this.fen = fen;
+            this.go = go;
+            this.startNanos = System.nanoTime();
+            this.stopped = false;
+            output.clear();
+        }
+
+        synchronized void stopped() {
+            stopped = true;
+        }
+
+        synchronized void onOutput(String line, Path transcriptFile) throws IOException {
+            if (go == null) {
+                return;
+            }
+            if (line.startsWith("info") && line.contains(" score ")) {
+                output.add(line);
+            } else if (line.startsWith("bestmove")) {
+                output.add(line);
+                if (!stopped) {
+                    long elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+                    Transcript.append(transcriptFile, fen, go, elapsedMs, output);
+                }
+                go = null;
+            }
+        }
+    }
+}
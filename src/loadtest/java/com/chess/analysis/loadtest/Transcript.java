@@ -0,0 +1,127 @@
+package com.chess.analysis.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recorded engine searches: for a position and {@code go} command, the lines
+ * the engine printed and how long the search took. Stored as plain-text
+ * blocks separated by a blank line, so transcripts can be read, edited and
+ * concatenated by hand:
+ *
+ * <pre>
+ * position fen rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1
+ * go depth 14
+ * # 153 ms
+ * info depth 1 seldepth 1 multipv 1 score cp -20 nodes 20 ... pv e7e5
+ * ...
+ * bestmove e7e5 ponder g1f3
+ * </pre>
+ *
+ * Positions are matched on board, side to move and castling rights only, so
+ * a search recorded via {@code position startpos moves ...} replays for the
+ * same position sent as a FEN, and vice versa, whatever either side wrote for
+ * the en passant square and move counters.
+ */
+final class Transcript {
+
+    /** One recorded search: its output (info lines with a score, then bestmove) and duration. */
+    record Search(List<String> output, long elapsedMs) {
+    }
+
+    private final Map<String, Search> exact = new HashMap<>();
+    private final Map<String, Search> byPosition = new HashMap<>();
+
+    static Transcript empty() {
+        return new Transcript();
+    }
+
+    static Transcript load(Path file) throws IOException {
+        Transcript transcript = new Transcript();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String fen = null;
+            String go = null;
+            long elapsedMs = 0;
+            List<String> output = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (line.startsWith("position fen ")) {
+                    fen = line.substring("position fen ".length());
+                    go = null;
+                    elapsedMs = 0;
+                    output = new ArrayList<>();
+                } else if (line.startsWith("go")) {
+                    go = line;
+                } else if (line.startsWith("# ") && line.endsWith(" ms")) {
+                    elapsedMs = Long.parseLong(line.substring(2, line.length() - 3).strip());
+                } else {
+                    output.add(line);
+                    if (line.startsWith("bestmove") && fen != null && go != null) {
+                        transcript.add(fen, go, new Search(List.copyOf(output), elapsedMs));
+                    }
+                }
+            }
+        }
+        return transcript;
+    }
+
+    private void add(String fen, String go, Search search) {
+        String position = positionKey(fen);
+        exact.put(position + '|' + go, search);
+        byPosition.putIfAbsent(position, search);
+    }
+
+    /**
+     * The search recorded for this position and go command; failing that, any
+     * search of the position (e.g. a different movetime); null if none.
+     */
+    Search find(String fen, String go) {
+        String position = positionKey(fen);
+        Search search = exact.get(position + '|' + go);
+        return search != null ? search : byPosition.get(position);
+    }
+
+    /**
+     * Appends one search to {@code file}. Every engine of the pool records into
+     * the same file, so the block is written in one locked write.
+     */
+    static void append(Path file, String fen, String go, long elapsedMs, List<String> output) throws IOException {
+        StringBuilder block = new StringBuilder();
+        block.append("position fen ").append(fen).append('\n');
+        block.append(go).append('\n');
+        block.append("# ").append(elapsedMs).append(" ms\n");
+        for (String line : output) {
+            block.append(line).append('\n');
+        }
+        block.append('\n');
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+                FileLock lock = channel.lock()) {
+            ByteBuffer bytes = ByteBuffer.wrap(block.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /** The first three FEN fields: board, side to move and castling rights. */
+    static String positionKey(String fen) {
+        String[] fields = fen.strip().split("\\s+");
+        return String.join(" ", List.of(fields).subList(0, Math.min(3, fields.length)));
+    }
+}
@@ -0,0 +1,65 @@
+package com.chess.analysis.controller;
+
+import com.chess.analysis.service.BulkAnalysisService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bulk analysis of multi-game PGN exports. Input is read game by game and
+ * results are streamed back as NDJSON, one line per game plus a final summary
+ * line, so neither side ever holds the whole file.
+ */
+@RestController
+@CrossOrigin
+@RequestMapping("/api/bulk")
+public class BulkController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final BulkAnalysisService bulkAnalysisService;
+
+    public BulkController(BulkAnalysisService bulkAnalysisService) {
+        this.bulkAnalysisService = bulkAnalysisService;
+    }
+
+    /** Multipart upload, e.g. {@code curl -F file=@club.pgn}. */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> analyzeUpload(@RequestParam("file") MultipartFile file) {
+        return stream(() -> file.getInputStream());
+    }
+
+    /** Raw PGN body, e.g. {@code curl --data-binary @club.pgn -H 'Content-Type: text/plain'}. */
+    @PostMapping(consumes = { MediaType.TEXT_PLAIN_VALUE, "application/x-chess-pgn" })
+    public ResponseEntity<StreamingResponseBody> analyzeBody(HttpServletRequest request) {
+        return stream(request::getInputStream);
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(InputSupplier input) {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try (InputStream in = input.open()) {
+                bulkAnalysisService.analyze(new InputStreamReader(in, StandardCharsets.UTF_8), writer);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    @FunctionalInterface
+    private interface InputSupplier {
+        InputStream open() throws IOException;
+    }
+}
@@ -1,22 +1,80 @@
 package com.chess.analysis.controller;
 
 import com.chess.analysis.model.AnalysisResponse;
+import com.chess.analysis.model.AnalysisSummary;
+import com.chess.analysis.model.Opening;
+import com.chess.analysis.service.AnalysisStore;
+import com.chess.analysis.service.AnalysisListener;
 import com.chess.analysis.service.ChessAnalysisService;
+import com.chess.analysis.service.CompactAnalysisWriter;
+import com.chess.analysis.service.EvaluationCache;
+import com.chess.analysis.service.OpeningBookService;
+import com.chess.analysis.service.PgnParser;
 import com.chess.analysis.service.StockfishService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Controller
 @CrossOrigin
 public class ChessController {
 
+    private static final Logger log = LoggerFactory.getLogger(ChessController.class);
+
+    /** Body of /api/evaluate. */
+    public record Evaluation(int evaluation) {
+    }
+
+    /** Body of /api/bestmove; {@code bestMove} is UCI, null when the position has no move. */
+    public record BestMove(int evaluation, String bestMove) {
+    }
+
+    /** Body of a failed API call. */
+    public record ApiError(String error) {
+    }
+
     private final ChessAnalysisService analysisService;
     private final StockfishService stockfishService;
+    private final EvaluationCache evaluationCache;
+    private final AnalysisStore analysisStore;
+    private final OpeningBookService openingBookService;
+    private final CompactAnalysisWriter compactAnalysisWriter;
+    private final int evaluateDepth;
+    private final int bestMoveDepth;
+    // Runs streamed analyses off the request thread, one virtual thread each;
+    // engine work itself is bounded by the engine pool.
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public ChessController(ChessAnalysisService analysisService, StockfishService stockfishService) {
+    public ChessController(ChessAnalysisService analysisService, StockfishService stockfishService,
+            EvaluationCache evaluationCache, AnalysisStore analysisStore,
+            OpeningBookService openingBookService, CompactAnalysisWriter compactAnalysisWriter,
+            @Value("${chess.api.evaluate-depth:10}") int evaluateDepth,
+            @Value("${chess.api.bestmove-depth:10}") int bestMoveDepth) {
         this.analysisService = analysisService;
         this.stockfishService = stockfishService;
+        this.evaluationCache = evaluationCache;
+        this.analysisStore = analysisStore;
+        this.openingBookService = openingBookService;
+        this.compactAnalysisWriter = compactAnalysisWriter;
+        this.evaluateDepth = evaluateDepth;
+        this.bestMoveDepth = bestMoveDepth;
     }
 
     @GetMapping("/")
@@ -25,9 +83,12 @@ public class ChessController {
     }
 
     @PostMapping("/analyze")
-    public String analyze(@RequestParam("pgn") String pgn, Model model) throws Exception {
+    public String analyze(@RequestParam("pgn") String pgn,
+            @RequestParam(value = "budgetMs", required = false) Long budgetMs, Model model) throws Exception {
 
-        AnalysisResponse response = analysisService.analyzeGame(pgn);
+        AnalysisResponse response = budgetMs != null
+                ? analysisService.analyzeGame(pgn, Duration.ofMillis(budgetMs))
+                : analysisService.analyzeGame(pgn);
 
         model.addAttribute("accuracy", response.getAccuracy());
         model.addAttribute("whitePlayer", response.getWhitePlayer());
@@ -35,34 +96,160 @@ public class ChessController {
         model.addAttribute("whiteElo", response.getWhiteElo());
         model.addAttribute("blackElo", response.getBlackElo());
         model.addAttribute("moves", response.getMoves());
+        model.addAttribute("opening", response.getOpening());
 
         return "result";
     }
 
+    /**
+     * Streams the analysis as Server-Sent Events: one {@code move} event per
+     * half-move (id = ply index, data = MoveReview) as soon as it is classified,
+     * then a single {@code summary} event with accuracy and players. An optional
+     * {@code budgetMs} bounds the whole analysis instead of searching to a
+     * fixed depth.
+     */
+    @PostMapping(value = "/analyze/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter analyzeStream(@RequestParam("pgn") String pgn,
+            @RequestParam(value = "budgetMs", required = false) Long budgetMs) {
+        // No timeout: long games legitimately take a while, and every event proves liveness
+        SseEmitter emitter = new SseEmitter(0L);
+        Future<?> analysis = streamExecutor.submit(() -> {
+            try {
+                AnalysisListener listener = (ply, review) -> emitter.send(
+                        SseEmitter.event().name("move").id(String.valueOf(ply)).data(review));
+                AnalysisSummary summary = budgetMs != null
+                        ? analysisService.analyzeGame(pgn, listener, Duration.ofMillis(budgetMs))
+                        : analysisService.analyzeGame(pgn, listener);
+                emitter.send(SseEmitter.event().name("summary").data(summary));
+                emitter.complete();
+            } catch (Exception e) {
+                emitter.completeWithError(e);
+            }
+        });
+        // Client gone: interrupt the analysis, which cancels the game's outstanding searches
+        emitter.onError(e -> analysis.cancel(true));
+        emitter.onTimeout(() -> analysis.cancel(true));
+        return emitter;
+    }
+
+    /**
+     * The full analysis as compact JSON (see {@link CompactAnalysisWriter}),
+     * serialized straight into the response and gzipped by the server when
+     * the client accepts it. The weak ETag is known before the game is
+     * searched, so a client revalidating an analysis it holds gets its 304
+     * without any engine work. It is only handed out with a complete
+     * analysis: one with failed searches is sent without it, so the client
+     * asks again rather than revalidating the stand-in scores. POST is for
+     * games too long for a query string; a matching If-None-Match on it is
+     * answered 412 as HTTP prescribes for unsafe methods, equally without a
+     * search.
+     */
+    @RequestMapping(value = "/api/analysis", method = { RequestMethod.GET, RequestMethod.POST },
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> analysis(@RequestParam("pgn") String pgn,
+            @RequestParam(value = "budgetMs", required = false) Long budgetMs, HttpMethod method,
+            WebRequest request) throws Exception {
+        Duration budget = budgetMs != null ? Duration.ofMillis(budgetMs) : analysisService.getDefaultTimeBudget();
+        String etag = compactAnalysisWriter.etag(pgn, analysisService.resultSettings(budget));
+        if (ifNoneMatch(request, etag)) {
+            return ResponseEntity.status(method == HttpMethod.GET ? HttpStatus.NOT_MODIFIED
+                    : HttpStatus.PRECONDITION_FAILED).eTag(etag).build();
+        }
+        AnalysisResponse response = analysisService.analyzeGame(pgn, budget);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (response.isComplete()) {
+            ok.eTag(etag);
+        }
+        return ok.contentType(MediaType.APPLICATION_JSON)
+                .body(out -> compactAnalysisWriter.write(response, out));
+    }
+
+    /**
+     * Whether If-None-Match names {@code etag} or is "*", compared weakly.
+     * Checked by hand rather than with WebRequest.checkNotModified, which
+     * puts the ETag on the response before we know whether the analysis
+     * comes out complete.
+     */
+    private static boolean ifNoneMatch(WebRequest request, String etag) {
+        String[] headers = request.getHeaderValues(HttpHeaders.IF_NONE_MATCH);
+        if (headers == null) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String header : headers) {
+            for (String tag : header.split(",")) {
+                tag = tag.strip();
+                if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(opaque)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @PostMapping("/api/evaluate")
     @ResponseBody
-    public String evaluatePosition(@RequestBody java.util.Map<String, String> payload) {
+    public ResponseEntity<?> evaluatePosition(@RequestBody Map<String, String> payload) {
+        String fen = payload.get("fen");
         try {
-            String fen = payload.get("fen");
-            int eval = analysisService.evaluatePosition(fen, 10);
-            return "{\"evaluation\": " + eval + "}";
+            return ResponseEntity.ok(new Evaluation(analysisService.evaluatePosition(fen, evaluateDepth)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiError(e.getMessage()));
         } catch (Exception e) {
-            e.printStackTrace();
-            return "{\"error\": \"Evaluation failed\"}";
+            log.warn("Evaluation failed for {}", fen, e);
+            return ResponseEntity.internalServerError().body(new ApiError("Evaluation failed"));
         }
     }
 
     @PostMapping("/api/bestmove")
     @ResponseBody
-    public String getBestMove(@RequestBody java.util.Map<String, String> payload) {
+    public ResponseEntity<?> getBestMove(@RequestBody Map<String, String> payload) {
+        String fen = payload.get("fen");
         try {
-            String fen = payload.get("fen");
-            StockfishService.EvalResult result = stockfishService.evaluateWithBestMove(fen, 10);
-            return "{\"evaluation\": " + result.evaluation() + ", \"bestMove\": \""
-                    + (result.bestMove() != null ? result.bestMove() : "") + "\"}";
+            StockfishService.EvalResult result = stockfishService.evaluateWithBestMove(fen, bestMoveDepth);
+            return ResponseEntity.ok(new BestMove(result.evaluation(), result.bestMove()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiError(e.getMessage()));
         } catch (Exception e) {
-            e.printStackTrace();
-            return "{\"error\": \"Best move lookup failed\"}";
+            log.warn("Best move lookup failed for {}", fen, e);
+            return ResponseEntity.internalServerError().body(new ApiError("Best move lookup failed"));
+        }
+    }
+
+    @GetMapping("/api/cache/stats")
+    @ResponseBody
+    public EvaluationCache.Stats cacheStats() {
+        return evaluationCache.stats();
+    }
+
+    @GetMapping("/api/store/stats")
+    @ResponseBody
+    public AnalysisStore.Stats storeStats() {
+        return analysisStore.stats();
+    }
+
+    @GetMapping("/api/engines/stats")
+    @ResponseBody
+    public StockfishService.PoolStats engineStats() {
+        return stockfishService.getPoolStats();
+    }
+
+    /**
+     * Names the opening of a PGN without running the engine; 404 when it is
+     * not a named line, 400 when the PGN does not parse.
+     */
+    @PostMapping("/api/opening")
+    @ResponseBody
+    public ResponseEntity<?> opening(@RequestParam("pgn") String pgn) {
+        PgnParser.ParsedGame game;
+        try {
+            game = PgnParser.parse(pgn);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiError(e.getMessage()));
         }
+        Opening opening = openingBookService.classify(game.uciMoves(), game.fens());
+        return opening != null ? ResponseEntity.ok(opening) : ResponseEntity.notFound().build();
     }
 }
@@ -0,0 +1,41 @@
+package com.chess.analysis.controller;
+
+import com.chess.analysis.service.StockfishService;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code POST /actuator/calibration} (optional body {@code {"depth": 12}}):
+ * benchmarks engines-by-threads layouts on this host and returns them
+ * fastest first. The running pool is left as is: put the winner into
+ * chess.engine.pool-size / chess.engine.threads (or enable
+ * calibrate-on-startup) to use it.
+ * <p>
+ * A run starts a full set of temporary engines next to the pool, so this is
+ * an admin operation: it is only reachable once {@code calibration} is added
+ * to management.endpoints.web.exposure.include, and a second run while one
+ * is going is refused with 409.
+ */
+@Component
+@Endpoint(id = "calibration")
+public class EngineCalibrationEndpoint {
+
+    private final StockfishService stockfishService;
+
+    public EngineCalibrationEndpoint(StockfishService stockfishService) {
+        this.stockfishService = stockfishService;
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<?> calibrate(@Nullable Integer depth) throws Exception {
+        try {
+            return new WebEndpointResponse<>(stockfishService.calibrate(
+                    depth != null ? depth : stockfishService.getCalibrationDepth()));
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(new ChessController.ApiError(e.getMessage()), 409);
+        }
+    }
+}
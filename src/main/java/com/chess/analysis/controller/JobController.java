@@ -0,0 +1,82 @@
+package com.chess.analysis.controller;
+
+import com.chess.analysis.model.AnalysisResponse;
+import com.chess.analysis.service.AnalysisJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous analysis: submit a PGN, poll (or long-poll) its progress, then
+ * fetch the finished {@link AnalysisResponse}.
+ */
+@RestController
+@CrossOrigin
+@RequestMapping("/api/jobs")
+public class JobController {
+
+    // Keep long-polls comfortably below typical load balancer idle timeouts
+    private static final long MAX_WAIT_MS = 25_000;
+
+    private final AnalysisJobService jobService;
+
+    public JobController(AnalysisJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody Map<String, String> payload) {
+        String pgn = payload.get("pgn");
+        if (pgn == null || pgn.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Missing pgn"));
+        }
+        try {
+            AnalysisJobService.JobStatus status = jobService.submit(pgn);
+            return ResponseEntity.accepted().location(URI.create("/api/jobs/" + status.id())).body(status);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(Map.of("error", "Analysis queue is full"));
+        }
+    }
+
+    /**
+     * Returns the job status. With {@code waitMs}, blocks until the job finishes
+     * (or, if {@code since} is given, has more than {@code since} plies done) or
+     * the wait expires.
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<AnalysisJobService.JobStatus> status(@PathVariable String id,
+            @RequestParam(defaultValue = "0") long waitMs,
+            @RequestParam(required = false) Integer since) throws InterruptedException {
+        AnalysisJobService.JobStatus status = waitMs > 0
+                ? jobService.awaitStatus(id, since != null ? since : Integer.MAX_VALUE,
+                        Duration.ofMillis(Math.min(waitMs, MAX_WAIT_MS)))
+                : jobService.status(id);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> result(@PathVariable String id) {
+        AnalysisJobService.JobStatus status = jobService.status(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        AnalysisResponse response = jobService.result(id);
+        if (response == null) {
+            // Still queued/running, or failed: the status says which
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/stats")
+    public AnalysisJobService.Stats stats() {
+        return jobService.stats();
+    }
+}
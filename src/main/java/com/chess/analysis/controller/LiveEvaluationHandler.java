@@ -0,0 +1,149 @@
+package com.chess.analysis.controller;
+
+import com.chess.analysis.service.PositionValidator;
+import com.chess.analysis.service.StockfishService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Live evaluation for the interactive board over a WebSocket at
+ * {@code /ws/live}. The client sends {@code {"fen": ...}} for the position on
+ * the board and gets an {@link Update} for every depth the engine completes,
+ * then a last one with {@code done} set. A new position, {@code {"stop": true}}
+ * or closing the socket stops the running search at once (UCI {@code stop}),
+ * so a position the user has moved on from does not keep an engine busy.
+ * Updates carry their FEN, so the client can drop any still on the way for
+ * the previous position. A FEN that is not a legal position is answered with
+ * a {@link Failure} and never reaches an engine.
+ */
+@Component
+public class LiveEvaluationHandler extends TextWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveEvaluationHandler.class);
+
+    /** One completed depth, or the end of the search; evaluation and best move as in /api/bestmove. */
+    public record Update(String fen, int depth, int evaluation, String bestMove, List<String> pv, boolean done) {
+    }
+
+    public record Failure(String fen, String error) {
+    }
+
+    private record Request(String fen, Boolean stop) {
+    }
+
+    private static final String SENDER = "liveSender";
+    private static final int SEND_TIME_LIMIT_MS = 5000;
+    private static final int SEND_BUFFER_BYTES = 64 * 1024;
+
+    private final StockfishService stockfishService;
+    private final ObjectMapper objectMapper;
+    private final int maxDepth;
+    private final Duration maxTime;
+    // One virtual thread per search; at most one search per socket
+    private final ExecutorService searches = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Future<?>> running = new ConcurrentHashMap<>();
+
+    public LiveEvaluationHandler(StockfishService stockfishService, ObjectMapper objectMapper,
+            @Value("${chess.live.max-depth:22}") int maxDepth,
+            @Value("${chess.live.max-time:10s}") Duration maxTime) {
+        this.stockfishService = stockfishService;
+        this.objectMapper = objectMapper;
+        this.maxDepth = maxDepth;
+        this.maxTime = maxTime;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // Updates are sent from the search threads; the decorator lets one send at a time
+        session.getAttributes().put(SENDER,
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_BYTES));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        WebSocketSession sender = (WebSocketSession) session.getAttributes().get(SENDER);
+        Request request;
+        try {
+            request = objectMapper.readValue(message.getPayload(), Request.class);
+        } catch (JacksonException e) {
+            send(sender, new Failure(null, "Expected {\"fen\": ...} or {\"stop\": true}"));
+            return;
+        }
+        stop(session);
+        if (Boolean.TRUE.equals(request.stop()) || request.fen() == null || request.fen().isBlank()) {
+            return;
+        }
+        String fen;
+        try {
+            fen = PositionValidator.checkFen(request.fen());
+        } catch (IllegalArgumentException e) {
+            send(sender, new Failure(request.fen(), e.getMessage()));
+            return;
+        }
+        running.put(session.getId(), searches.submit(() -> search(sender, fen)));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        stop(session);
+    }
+
+    private void stop(WebSocketSession session) {
+        Future<?> search = running.remove(session.getId());
+        if (search != null) {
+            // Interrupting the search sends the engine stop and hands it back to the pool
+            search.cancel(true);
+        }
+    }
+
+    private void search(WebSocketSession sender, String fen) {
+        int[] lastDepth = { 0 };
+        try {
+            StockfishService.EvalResult result = stockfishService.evaluateLive(fen, maxDepth, maxTime,
+                    (depth, update) -> {
+                        lastDepth[0] = depth;
+                        send(sender, new Update(fen, depth, update.evaluation(), update.bestMove(), update.pv(),
+                                false));
+                    });
+            send(sender, new Update(fen, lastDepth[0], result.evaluation(), result.bestMove(), result.pv(), true));
+        } catch (InterruptedException e) {
+            // Superseded by another position, or the socket closed
+        } catch (UncheckedIOException e) {
+            log.debug("Live evaluation socket {} gone: {}", sender.getId(), e.getMessage());
+        } catch (Exception e) {
+            log.warn("Live evaluation failed for {}", fen, e);
+            try {
+                send(sender, new Failure(fen, "Evaluation failed"));
+            } catch (UncheckedIOException gone) {
+                // Nobody left to tell
+            }
+        }
+    }
+
+    private void send(WebSocketSession sender, Object payload) {
+        try {
+            sender.sendMessage(new TextMessage(objectMapper.writeValueAsString(payload)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.chess.analysis.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final LiveEvaluationHandler liveEvaluationHandler;
+    private final String[] allowedOrigins;
+
+    public WebSocketConfig(LiveEvaluationHandler liveEvaluationHandler,
+            @Value("${chess.live.allowed-origins:}") String[] allowedOrigins) {
+        this.liveEvaluationHandler = liveEvaluationHandler;
+        this.allowedOrigins = allowedOrigins;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        // A live socket holds an engine for as long as it searches, so unlike the REST
+        // endpoints it only accepts the app's own pages unless other origins are listed
+        registry.addHandler(liveEvaluationHandler, "/ws/live").setAllowedOriginPatterns(allowedOrigins);
+    }
+}
@@ -11,9 +11,12 @@ public class AnalysisResponse {
     private String whiteElo;
     private String blackElo;
     private String timeControl;
+    private Opening opening;
+    private String startFen; // FEN before the first move, null for the standard start
+    private boolean complete = true; // false when a search failed and some scores are stand-ins
 
     public AnalysisResponse(double accuracy, List<MoveReview> moves, String whitePlayer, String blackPlayer,
-            String whiteElo, String blackElo, String timeControl) {
+            String whiteElo, String blackElo, String timeControl, Opening opening) {
         this.accuracy = accuracy;
         this.moves = moves;
         this.whitePlayer = whitePlayer;
@@ -21,6 +24,20 @@ public class AnalysisResponse {
         this.whiteElo = whiteElo;
         this.blackElo = blackElo;
         this.timeControl = timeControl;
+        this.opening = opening;
+    }
+
+    public AnalysisResponse(double accuracy, List<MoveReview> moves, String whitePlayer, String blackPlayer,
+            String whiteElo, String blackElo, String timeControl, Opening opening, String startFen) {
+        this(accuracy, moves, whitePlayer, blackPlayer, whiteElo, blackElo, timeControl, opening);
+        this.startFen = startFen;
+    }
+
+    public AnalysisResponse(double accuracy, List<MoveReview> moves, String whitePlayer, String blackPlayer,
+            String whiteElo, String blackElo, String timeControl, Opening opening, String startFen,
+            boolean complete) {
+        this(accuracy, moves, whitePlayer, blackPlayer, whiteElo, blackElo, timeControl, opening, startFen);
+        this.complete = complete;
     }
 
     public double getAccuracy() {
@@ -50,4 +67,16 @@ public class AnalysisResponse {
     public String getTimeControl() {
         return timeControl;
     }
+
+    public Opening getOpening() {
+        return opening;
+    }
+
+    public String getStartFen() {
+        return startFen;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
 }
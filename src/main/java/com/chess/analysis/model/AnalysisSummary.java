@@ -0,0 +1,84 @@
+package com.chess.analysis.model;
+
+/**
+ * Game-level results of an analysis without the per-move list; sent as the
+ * final event when moves are streamed.
+ */
+public class AnalysisSummary {
+
+    private double accuracy;
+    private int plies;
+    private String whitePlayer;
+    private String blackPlayer;
+    private String whiteElo;
+    private String blackElo;
+    private String timeControl;
+    private Opening opening;
+    private String startFen; // FEN before the first move, null for the standard start
+    private boolean complete = true; // false when a search failed and some scores are stand-ins
+
+    public AnalysisSummary(double accuracy, int plies, String whitePlayer, String blackPlayer,
+            String whiteElo, String blackElo, String timeControl, Opening opening) {
+        this.accuracy = accuracy;
+        this.plies = plies;
+        this.whitePlayer = whitePlayer;
+        this.blackPlayer = blackPlayer;
+        this.whiteElo = whiteElo;
+        this.blackElo = blackElo;
+        this.timeControl = timeControl;
+        this.opening = opening;
+    }
+
+    public AnalysisSummary(double accuracy, int plies, String whitePlayer, String blackPlayer,
+            String whiteElo, String blackElo, String timeControl, Opening opening, String startFen) {
+        this(accuracy, plies, whitePlayer, blackPlayer, whiteElo, blackElo, timeControl, opening);
+        this.startFen = startFen;
+    }
+
+    public AnalysisSummary(double accuracy, int plies, String whitePlayer, String blackPlayer,
+            String whiteElo, String blackElo, String timeControl, Opening opening, String startFen,
+            boolean complete) {
+        this(accuracy, plies, whitePlayer, blackPlayer, whiteElo, blackElo, timeControl, opening, startFen);
+        this.complete = complete;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    public int getPlies() {
+        return plies;
+    }
+
+    public String getWhitePlayer() {
+        return whitePlayer;
+    }
+
+    public String getBlackPlayer() {
+        return blackPlayer;
+    }
+
+    public String getWhiteElo() {
+        return whiteElo;
+    }
+
+    public String getBlackElo() {
+        return blackElo;
+    }
+
+    public String getTimeControl() {
+        return timeControl;
+    }
+
+    public Opening getOpening() {
+        return opening;
+    }
+
+    public String getStartFen() {
+        return startFen;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -1,5 +1,7 @@
 package com.chess.analysis.model;
 
+import java.util.List;
+
 public class MoveReview {
 
     private String move; // SAN move
@@ -9,6 +11,7 @@ public class MoveReview {
     private String fen;
     private String bestMove; // UCI best move suggested by engine (null when not needed)
     private String clockTime; // Remaining clock time from [%clk] annotation, e.g. "4:57"
+    private List<String> bestLine; // Engine PV (UCI) starting with bestMove (null when not needed)
 
     public MoveReview(String move, int centipawnLoss,
             int evaluation, String classification, String fen) {
@@ -31,6 +34,13 @@ public class MoveReview {
         this.clockTime = clockTime;
     }
 
+    public MoveReview(String move, int centipawnLoss,
+            int evaluation, String classification, String fen, String bestMove, String clockTime,
+            List<String> bestLine) {
+        this(move, centipawnLoss, evaluation, classification, fen, bestMove, clockTime);
+        this.bestLine = bestLine;
+    }
+
     public String getMove() {
         return move;
     }
@@ -58,4 +68,8 @@ public class MoveReview {
     public String getClockTime() {
         return clockTime;
     }
+
+    public List<String> getBestLine() {
+        return bestLine;
+    }
 }
\ No newline at end of file
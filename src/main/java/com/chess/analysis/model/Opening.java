@@ -0,0 +1,30 @@
+package com.chess.analysis.model;
+
+/**
+ * Named opening a game followed, e.g. "C65" / "Ruy Lopez: Berlin Defense".
+ * {@code plies} is how many half-moves of the game the match covers.
+ */
+public class Opening {
+
+    private String eco;
+    private String name;
+    private int plies;
+
+    public Opening(String eco, String name, int plies) {
+        this.eco = eco;
+        this.name = name;
+        this.plies = plies;
+    }
+
+    public String getEco() {
+        return eco;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPlies() {
+        return plies;
+    }
+}
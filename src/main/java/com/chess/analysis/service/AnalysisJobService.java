@@ -0,0 +1,211 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.AnalysisResponse;
+import com.chess.analysis.model.MoveReview;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs whole-game analyses as background jobs so HTTP requests only submit and
+ * poll. Jobs wait in a bounded queue in front of {@link ChessAnalysisService};
+ * when it is full, submission fails fast instead of tying up a request thread.
+ * Finished jobs are kept for a retention period and then forgotten, checked
+ * every minute (or retention, if shorter) whether or not new jobs arrive.
+ */
+@Service
+public class AnalysisJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisJobService.class);
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /** Snapshot of a job for polling clients. */
+    public record JobStatus(String id, State state, int pliesDone, int totalPlies, String error) {
+    }
+
+    /** Queue occupancy and lifetime counters. */
+    public record Stats(int queued, int running, int queueCapacity, int workers, long completed, long failed,
+            long rejected) {
+    }
+
+    private final ChessAnalysisService analysisService;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "analysis-jobs-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final int queueCapacity;
+    private final Duration retention;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public AnalysisJobService(ChessAnalysisService analysisService,
+            @Value("${chess.jobs.workers:2}") int workers,
+            @Value("${chess.jobs.queue-capacity:32}") int queueCapacity,
+            @Value("${chess.jobs.retention:10m}") Duration retention) {
+        this.analysisService = analysisService;
+        this.queueCapacity = queueCapacity;
+        this.retention = retention;
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+        long purgeMs = Math.max(1, Math.min(retention.toMillis(), Duration.ofMinutes(1).toMillis()));
+        purger.scheduleWithFixedDelay(this::purgeExpired, purgeMs, purgeMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purger.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a game for analysis and returns its initial status.
+     *
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public JobStatus submit(String pgn) {
+        Job job = new Job(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, pgn));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejected.increment();
+            throw e;
+        }
+        return job.status();
+    }
+
+    /** Returns the job's status, or null if it is unknown or expired. */
+    public JobStatus status(String id) {
+        Job job = jobs.get(id);
+        return job != null ? job.status() : null;
+    }
+
+    /**
+     * Long-poll variant of {@link #status}: blocks until the job has finished,
+     * has progressed past {@code sincePlies}, or {@code timeout} elapses.
+     */
+    public JobStatus awaitStatus(String id, int sincePlies, Duration timeout) throws InterruptedException {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return null;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (job) {
+            while (!job.isFinished() && job.pliesDone <= sincePlies) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    break;
+                }
+                job.wait(remainingMs);
+            }
+            return job.status();
+        }
+    }
+
+    /** Returns the finished analysis, or null while the job is pending or if it failed. */
+    public AnalysisResponse result(String id) {
+        Job job = jobs.get(id);
+        return job != null ? job.result : null;
+    }
+
+    public Stats stats() {
+        return new Stats(executor.getQueue().size(), executor.getActiveCount(), queueCapacity,
+                executor.getMaximumPoolSize(), completed.sum(), failed.sum(), rejected.sum());
+    }
+
+    private void run(Job job, String pgn) {
+        job.update(State.RUNNING);
+        try {
+            List<MoveReview> reviews = new ArrayList<>();
+            var summary = analysisService.analyzeGame(pgn, new AnalysisListener() {
+                @Override
+                public void onStart(int totalPlies) {
+                    job.totalPlies = totalPlies;
+                }
+
+                @Override
+                public void onMove(int ply, MoveReview review) {
+                    reviews.add(review);
+                    job.progress(ply + 1);
+                }
+            });
+            job.result = new AnalysisResponse(summary.getAccuracy(), reviews, summary.getWhitePlayer(),
+                    summary.getBlackPlayer(), summary.getWhiteElo(), summary.getBlackElo(),
+                    summary.getTimeControl(), summary.getOpening(), summary.getStartFen(), summary.isComplete());
+            completed.increment();
+            job.update(State.DONE);
+        } catch (Exception e) {
+            log.warn("Analysis job {} failed: {}", job.id, e.getMessage());
+            job.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            failed.increment();
+            job.update(State.FAILED);
+        }
+    }
+
+    private void purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private static class Job {
+
+        private final String id;
+        private volatile State state = State.QUEUED;
+        private volatile int pliesDone;
+        private volatile int totalPlies;
+        private volatile AnalysisResponse result;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        Job(String id) {
+            this.id = id;
+        }
+
+        boolean isFinished() {
+            return state == State.DONE || state == State.FAILED;
+        }
+
+        synchronized void progress(int plies) {
+            pliesDone = plies;
+            notifyAll();
+        }
+
+        synchronized void update(State newState) {
+            state = newState;
+            if (isFinished()) {
+                finishedAt = Instant.now();
+            }
+            notifyAll();
+        }
+
+        JobStatus status() {
+            return new JobStatus(id, state, pliesDone, totalPlies, error);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.MoveReview;
+
+/**
+ * Receives move reviews from {@link ChessAnalysisService#analyzeGame(String, AnalysisListener)}
+ * one at a time, in game order.
+ */
+@FunctionalInterface
+public interface AnalysisListener {
+
+    /** Called once after the PGN is parsed, before any move is reported. */
+    default void onStart(int totalPlies) throws Exception {
+    }
+
+    /**
+     * Called once per half-move. {@code ply} is the zero-based index of the move.
+     * Throwing aborts the analysis (e.g. when a streaming client disconnects).
+     */
+    void onMove(int ply, MoveReview review) throws Exception;
+}
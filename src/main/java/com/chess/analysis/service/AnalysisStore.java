@@ -0,0 +1,428 @@
+package com.chess.analysis.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Finished game analyses on local disk, so a game submitted again (a shared
+ * link, a refresh, a coach going over a student's games) is answered without
+ * the engine, also after a restart.
+ * <p>
+ * Entries are keyed by a hash of the game's moves (start position plus UCI
+ * moves, so headers, comments and move-number formatting don't matter) and
+ * the analysis settings, and hold the engine result of every ply. The rest of
+ * a response (players, clocks, classifications) is rebuilt from the
+ * submitted PGN, which costs far less than a single search.
+ * <p>
+ * Storage is one append-only log of records: payload length, 128-bit key,
+ * payload, CRC32. An in-memory index maps each key to its latest record and
+ * is rebuilt by scanning the log at startup, which also drops a torn last
+ * record. When the live records outgrow {@code max-size} the least recently
+ * used entries are evicted, and once most of the file is dead it is compacted
+ * into a fresh file that atomically replaces it. Reads run concurrently;
+ * writes, eviction and compaction take the write lock.
+ */
+@Service
+public class AnalysisStore {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalysisStore.class);
+
+    /** Occupancy and lifetime counters. */
+    public record Stats(int entries, long liveBytes, long fileBytes, long maxBytes, long hits, long misses,
+            long evictions, long compactions) {
+    }
+
+    /** First 128 bits of the SHA-256 of a game's moves and the analysis settings. */
+    public record Key(long high, long low) {
+    }
+
+    // Bumped when the payload encoding changes, so old records are never read back
+    private static final String FORMAT = "v1";
+    private static final String LOG_FILE = "analyses.log";
+
+    // Record layout: payloadLength(4) | keyHigh(8) | keyLow(8) | payload | crc32(4)
+    private static final int HEADER_BYTES = 20;
+    private static final int RECORD_OVERHEAD = HEADER_BYTES + 4;
+    private static final int MAX_PAYLOAD = 16 << 20;
+
+    // Evict down to this share of max-size, so one put doesn't evict on every call
+    private static final double EVICT_TO = 0.9;
+
+    private final long maxBytes;
+    private final Path directory;
+    private final Map<Key, Entry> index = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    // Guarded by the write lock (channel is swapped by compaction, read under the read lock)
+    private FileChannel channel;
+    private long fileBytes;
+    private long liveBytes;
+
+    /** Where a key's latest record sits in the log; {@code lastUsed} orders eviction. */
+    private static final class Entry {
+
+        final long offset;
+        final int length;
+        volatile long lastUsed;
+
+        Entry(long offset, int length, long lastUsed) {
+            this.offset = offset;
+            this.length = length;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    public AnalysisStore(@Value("${chess.store.path:analysis-store}") String path,
+            @Value("${chess.store.max-size:256MB}") DataSize maxSize, MeterRegistry meterRegistry) {
+        long budget = maxSize.toBytes();
+        this.directory = budget > 0 ? Path.of(path) : null;
+        if (budget > 0) {
+            try {
+                open();
+            } catch (IOException e) {
+                log.error("Analysis store at {} unavailable, running without it: {}", directory, e.getMessage());
+                budget = 0;
+            }
+        }
+        this.maxBytes = budget;
+        if (isEnabled()) {
+            // max-size may have been lowered since the log was written
+            lock.writeLock().lock();
+            try {
+                evictIfFull();
+                compactIfSparse();
+            } catch (IOException e) {
+                log.warn("Analysis store compaction failed: {}", e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        FunctionCounter.builder("chess.store.lookups", hits, LongAdder::sum)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("chess.store.lookups", misses, LongAdder::sum)
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("chess.store.evictions", evictions, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("chess.store.entries", index, Map::size)
+                .description("Games in the analysis store").register(meterRegistry);
+        Gauge.builder("chess.store.size", this, store -> store.stats().liveBytes())
+                .baseUnit("bytes").description("Live bytes in the analysis store").register(meterRegistry);
+    }
+
+    /**
+     * Keys a game by its moves and {@code settings} (anything that changes the
+     * engine results, e.g. depth and time budget). {@code startFen} is the
+     * position before the first move, as the replay board wrote it.
+     */
+    public static Key key(String startFen, List<String> uciMoves, String settings) {
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        sha.update((FORMAT + '|' + settings + '|' + startFen + '|')
+                .getBytes(StandardCharsets.UTF_8));
+        for (String move : uciMoves) {
+            sha.update(move.getBytes(StandardCharsets.US_ASCII));
+            sha.update((byte) ' ');
+        }
+        ByteBuffer digest = ByteBuffer.wrap(sha.digest());
+        return new Key(digest.getLong(), digest.getLong());
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /** Returns the stored per-ply results (start position first), or null on a miss. */
+    public List<StockfishService.EvalResult> get(Key key) {
+        if (!isEnabled()) {
+            return null;
+        }
+        byte[] payload;
+        lock.readLock().lock();
+        try {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            entry.lastUsed = clock.incrementAndGet();
+            payload = read(entry, key);
+        } catch (IOException e) {
+            log.warn("Analysis store read failed: {}", e.getMessage());
+            misses.increment();
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.increment();
+        return decode(payload);
+    }
+
+    /** Stores the per-ply results of a game, replacing any earlier entry for the key. */
+    public void put(Key key, List<StockfishService.EvalResult> results) {
+        if (!isEnabled()) {
+            return;
+        }
+        byte[] payload = encode(results);
+        if (payload.length + RECORD_OVERHEAD > maxBytes || payload.length > MAX_PAYLOAD) {
+            return;
+        }
+        ByteBuffer record = record(key, payload);
+        lock.writeLock().lock();
+        try {
+            long offset = fileBytes;
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            fileBytes += record.limit();
+            track(key, new Entry(offset, record.limit(), clock.incrementAndGet()));
+            evictIfFull();
+            compactIfSparse();
+        } catch (IOException e) {
+            log.warn("Analysis store write failed: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Stats stats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(index.size(), liveBytes, fileBytes, maxBytes, hits.sum(), misses.sum(),
+                    evictions.sum(), compactions.sum());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            log.warn("Closing the analysis store failed: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Opens the log and indexes it, truncating anything after the last intact record. */
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        channel = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        long offset = 0;
+        while (offset + RECORD_OVERHEAD <= size) {
+            header.clear();
+            readFully(header, offset);
+            header.flip();
+            int length = header.getInt();
+            Key key = new Key(header.getLong(), header.getLong());
+            if (length < 0 || length > MAX_PAYLOAD || offset + RECORD_OVERHEAD + length > size) {
+                break;
+            }
+            Entry entry = new Entry(offset, RECORD_OVERHEAD + length, clock.incrementAndGet());
+            try {
+                read(entry, key);
+            } catch (IOException e) {
+                break;
+            }
+            track(key, entry);
+            offset += entry.length;
+        }
+        if (offset < size) {
+            log.warn("Analysis store: dropping {} bytes after the last intact record", size - offset);
+            channel.truncate(offset);
+        }
+        fileBytes = offset;
+        log.info("Analysis store at {}: {} games, {} KB", directory.toAbsolutePath(), index.size(), liveBytes >> 10);
+    }
+
+    private void track(Key key, Entry entry) {
+        Entry previous = index.put(key, entry);
+        liveBytes += entry.length - (previous != null ? previous.length : 0);
+    }
+
+    /** Drops the least recently used entries until the live records fit again. */
+    private void evictIfFull() {
+        if (liveBytes <= maxBytes) {
+            return;
+        }
+        List<Map.Entry<Key, Entry>> byAge = new ArrayList<>(index.entrySet());
+        byAge.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+        long target = (long) (maxBytes * EVICT_TO);
+        for (Map.Entry<Key, Entry> oldest : byAge) {
+            if (liveBytes <= target) {
+                break;
+            }
+            index.remove(oldest.getKey());
+            liveBytes -= oldest.getValue().length;
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Rewrites the live records, least recently used first (so a restart
+     * keeps their order), once dead ones take up most of the file.
+     */
+    private void compactIfSparse() throws IOException {
+        long dead = fileBytes - liveBytes;
+        if (dead <= liveBytes || dead < maxBytes / 8) {
+            return;
+        }
+        List<Map.Entry<Key, Entry>> live = new ArrayList<>(index.entrySet());
+        live.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+
+        Path compacted = directory.resolve(LOG_FILE + ".compact");
+        Map<Key, Entry> moved = new HashMap<>();
+        long offset = 0;
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<Key, Entry> e : live) {
+                Entry entry = e.getValue();
+                long written = 0;
+                while (written < entry.length) {
+                    written += channel.transferTo(entry.offset + written, entry.length - written, out);
+                }
+                moved.put(e.getKey(), new Entry(offset, entry.length, entry.lastUsed));
+                offset += entry.length;
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(compacted, directory.resolve(LOG_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.putAll(moved);
+        fileBytes = offset;
+        compactions.increment();
+        log.debug("Analysis store compacted to {} KB ({} games)", offset >> 10, moved.size());
+    }
+
+    /** Reads and checks a record; returns its payload. */
+    private byte[] read(Entry entry, Key key) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(entry.length);
+        readFully(record, entry.offset);
+        record.flip();
+        int length = record.getInt();
+        if (length != entry.length - RECORD_OVERHEAD || record.getLong() != key.high()
+                || record.getLong() != key.low()) {
+            throw new IOException("Corrupt record at offset " + entry.offset);
+        }
+        byte[] payload = new byte[length];
+        record.get(payload);
+        if (record.getInt() != crc(key, payload)) {
+            throw new IOException("Checksum mismatch at offset " + entry.offset);
+        }
+        return payload;
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the analysis store");
+            }
+        }
+    }
+
+    private static ByteBuffer record(Key key, byte[] payload) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        record.putInt(payload.length).putLong(key.high()).putLong(key.low()).put(payload)
+                .putInt(crc(key, payload));
+        return record.flip();
+    }
+
+    private static int crc(Key key, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(16).putLong(key.high()).putLong(key.low()).flip());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // Payload: plies(4), then per ply evaluation(4) | bestMove (UTF, "" for none) | pvLength(2) | pv moves (UTF)
+    private static byte[] encode(List<StockfishService.EvalResult> results) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(results.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(results.size());
+            for (StockfishService.EvalResult result : results) {
+                out.writeInt(result.evaluation());
+                out.writeUTF(result.bestMove() != null ? result.bestMove() : "");
+                List<String> pv = result.pv() != null ? result.pv() : List.of();
+                out.writeShort(pv.size());
+                for (String move : pv) {
+                    out.writeUTF(move);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<StockfishService.EvalResult> decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int plies = in.readInt();
+            List<StockfishService.EvalResult> results = new ArrayList<>(plies);
+            for (int i = 0; i < plies; i++) {
+                int evaluation = in.readInt();
+                String bestMove = in.readUTF();
+                String[] pv = new String[in.readUnsignedShort()];
+                for (int j = 0; j < pv.length; j++) {
+                    pv[j] = in.readUTF();
+                }
+                results.add(new StockfishService.EvalResult(evaluation, bestMove.isEmpty() ? null : bestMove,
+                        List.of(pv)));
+            }
+            return results;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.AnalysisResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Analyzes every game of a (possibly huge) multi-game PGN and writes one NDJSON
+ * line per game as soon as it finishes.
+ * <p>
+ * Games are read lazily with {@link PgnGameReader} and several are analyzed at
+ * once, so their plies interleave on the engine pool and no engine idles while
+ * a single game waits on its last searches. A semaphore caps the games in
+ * flight, which also caps how much of the input is held in memory.
+ */
+@Service
+public class BulkAnalysisService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkAnalysisService.class);
+
+    /** One NDJSON line per game; {@code game} is the 1-based position in the input. */
+    public record GameResult(int game, AnalysisResponse analysis, String error) {
+    }
+
+    /** Final NDJSON line with aggregate throughput. */
+    public record Summary(int games, int failed, long elapsedMs, double gamesPerMinute) {
+    }
+
+    private record SummaryLine(Summary summary) {
+    }
+
+    private final ChessAnalysisService analysisService;
+    private final ObjectMapper objectMapper;
+    private final int gamesInFlight;
+
+    public BulkAnalysisService(ChessAnalysisService analysisService, StockfishService stockfishService,
+            ObjectMapper objectMapper, @Value("${chess.bulk.games-in-flight:0}") int gamesInFlight) {
+        this.analysisService = analysisService;
+        this.objectMapper = objectMapper;
+        // One more game than engines keeps the pool busy while a game finishes its tail
+        this.gamesInFlight = gamesInFlight > 0 ? gamesInFlight : stockfishService.getBatchCapacity() + 1;
+    }
+
+    /**
+     * Reads games from {@code pgn} until exhausted and writes a {@link GameResult}
+     * line per game (in completion order) followed by a {@link Summary} line.
+     */
+    public Summary analyze(Reader pgn, Writer ndjson) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<UncheckedIOException> writeFailure = new AtomicReference<>();
+        Semaphore slots = new Semaphore(gamesInFlight);
+        // The semaphore bounds the games; each one just needs a cheap thread to wait on
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        int games = 0;
+
+        try (PgnGameReader reader = new PgnGameReader(pgn)) {
+            String gamePgn;
+            // Stop reading once the output is gone (e.g. the client disconnected)
+            while (writeFailure.get() == null && (gamePgn = reader.nextGame()) != null) {
+                slots.acquire();
+                int gameNumber = ++games;
+                String text = gamePgn;
+                executor.execute(() -> {
+                    try {
+                        GameResult result;
+                        try {
+                            result = new GameResult(gameNumber, analysisService.analyzeGame(text), null);
+                        } catch (Exception e) {
+                            log.warn("Bulk game {} failed: {}", gameNumber, e.getMessage());
+                            failed.incrementAndGet();
+                            result = new GameResult(gameNumber, null, Objects.requireNonNullElse(e.getMessage(),
+                                    e.getClass().getSimpleName()));
+                        }
+                        writeLine(ndjson, result);
+                    } catch (UncheckedIOException e) {
+                        writeFailure.compareAndSet(null, e);
+                    } finally {
+                        slots.release();
+                    }
+                });
+            }
+            // Wait for the tail of the input to finish
+            slots.acquire(gamesInFlight);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (writeFailure.get() != null) {
+            throw writeFailure.get().getCause();
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        Summary summary = new Summary(games, failed.get(), elapsedMs, games * 60_000.0 / elapsedMs);
+        writeLine(ndjson, new SummaryLine(summary));
+        log.info("Bulk analysis finished: {} games ({} failed) in {} ms, {} games/min", games, failed.get(),
+                elapsedMs, String.format("%.1f", summary.gamesPerMinute()));
+        return summary;
+    }
+
+    private void writeLine(Writer out, Object value) {
+        String json = objectMapper.writeValueAsString(value);
+        synchronized (out) {
+            try {
+                out.write(json);
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -1,136 +1,248 @@
 package com.chess.analysis.service;
 
 import com.chess.analysis.model.AnalysisResponse;
+import com.chess.analysis.model.AnalysisSummary;
 import com.chess.analysis.model.MoveReview;
+import com.chess.analysis.model.Opening;
 import com.github.bhlangonijr.chesslib.Board;
-import com.github.bhlangonijr.chesslib.move.Move;
-import com.github.bhlangonijr.chesslib.pgn.PgnHolder;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
 
 @Service
 public class ChessAnalysisService {
 
+    /**
+     * How the plies of a game are spread over the engine pool.
+     * <ul>
+     * <li>POOLED: every FEN is an independent task on whichever engine is
+     * free.</li>
+     * <li>ORDERED: each engine gets a contiguous range of plies and walks it with
+     * {@code position startpos moves ...}, reusing its hash from ply to
+     * ply.</li>
+     * </ul>
+     */
+    public enum SchedulingMode {
+        POOLED, ORDERED
+    }
+
+    /** Bumped whenever move classification or accuracy changes; part of every analysis ETag. */
+    public static final int CLASSIFICATION_VERSION = 1;
+
     private final StockfishService stockfishService;
     private final OpeningBookService openingBookService;
-    // Limit threads to avoid crashing your PC.
-    // Using N-1 cores to keep the system responsive.
-    private final ExecutorService executor = Executors.newFixedThreadPool(
-            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
-
-    public ChessAnalysisService(StockfishService stockfishService, OpeningBookService openingBookService) {
+    private final AnalysisStore analysisStore;
+    private final SchedulingMode schedulingMode;
+    private final int depth;
+    private final Duration defaultTimeBudget;
+    private final Duration maxTimeBudget;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary gamePlies;
+
+    // Search tasks mostly wait for an engine or its output, so each gets a virtual thread
+    private static final ThreadFactory SEARCH_THREADS = Thread.ofVirtual().name("analysis-search-", 0).factory();
+
+    // Part of a time budget kept back for classification and response overhead
+    private static final double BUDGET_SAFETY = 0.9;
+
+    // Stand-in for a ply whose search failed; games containing one are not stored
+    private static final StockfishService.EvalResult NO_RESULT = new StockfishService.EvalResult(0, null);
+
+    public ChessAnalysisService(StockfishService stockfishService, OpeningBookService openingBookService,
+            AnalysisStore analysisStore, MeterRegistry meterRegistry,
+            @Value("${chess.analysis.scheduling:ORDERED}") SchedulingMode schedulingMode,
+            @Value("${chess.analysis.depth:14}") int depth,
+            @Value("${chess.analysis.time-budget:0s}") Duration defaultTimeBudget,
+            @Value("${chess.analysis.max-time-budget:60s}") Duration maxTimeBudget) {
         this.stockfishService = stockfishService;
         this.openingBookService = openingBookService;
+        this.analysisStore = analysisStore;
+        this.schedulingMode = schedulingMode;
+        this.depth = depth;
+        this.maxTimeBudget = maxTimeBudget;
+        this.defaultTimeBudget = budget(defaultTimeBudget);
+        this.meterRegistry = meterRegistry;
+        this.gamePlies = DistributionSummary.builder("chess.analysis.plies")
+                .description("Plies per analyzed game").baseUnit("plies").register(meterRegistry);
+    }
+
+    public Duration getDefaultTimeBudget() {
+        return defaultTimeBudget;
+    }
+
+    /**
+     * The budget a game is actually analyzed with: none for null or
+     * non-positive, at most chess.analysis.max-time-budget otherwise.
+     */
+    private Duration budget(Duration timeBudget) {
+        if (timeBudget == null || !timeBudget.isPositive()) {
+            return Duration.ZERO;
+        }
+        return timeBudget.compareTo(maxTimeBudget) > 0 ? maxTimeBudget : timeBudget;
+    }
+
+    /**
+     * The search settings a game analyzed within {@code timeBudget} is keyed
+     * by: same moves, same settings, same scores. Includes the opening book
+     * tables, since book plies are scored from them.
+     */
+    public String settings(Duration timeBudget) {
+        return "depth=" + depth + ",budgetMs=" + budget(timeBudget).toMillis() + ",book="
+                + openingBookService.getVersion();
+    }
+
+    /**
+     * Everything besides the moves that decides what an analysis says: the
+     * search settings plus the classification version.
+     */
+    public String resultSettings(Duration timeBudget) {
+        return settings(timeBudget) + ",classification=" + CLASSIFICATION_VERSION;
     }
 
     public AnalysisResponse analyzeGame(String pgnContent) throws Exception {
-        File tempFile = File.createTempFile("game", ".pgn");
-        Files.write(tempFile.toPath(), pgnContent.getBytes());
+        return analyzeGame(pgnContent, defaultTimeBudget);
+    }
+
+    /** Analyzes a game within {@code timeBudget}; zero means search every ply to the fixed depth. */
+    public AnalysisResponse analyzeGame(String pgnContent, Duration timeBudget) throws Exception {
+        List<MoveReview> reviews = new ArrayList<>();
+        AnalysisSummary summary = analyzeGame(pgnContent, (ply, review) -> reviews.add(review), timeBudget);
+        return new AnalysisResponse(summary.getAccuracy(), reviews, summary.getWhitePlayer(),
+                summary.getBlackPlayer(), summary.getWhiteElo(), summary.getBlackElo(), summary.getTimeControl(),
+                summary.getOpening(), summary.getStartFen(), summary.isComplete());
+    }
 
-        PgnHolder holder = new PgnHolder(tempFile.getAbsolutePath());
-        holder.loadPgn();
-        var game = holder.getGames().getFirst();
+    /**
+     * Analyzes a game and hands each {@link MoveReview} to the listener, in game
+     * order, as soon as the plies it depends on have been searched. Only the
+     * summary is returned, so streaming callers never hold the full move list.
+     */
+    public AnalysisSummary analyzeGame(String pgnContent, AnalysisListener listener) throws Exception {
+        return analyzeGame(pgnContent, listener, defaultTimeBudget);
+    }
 
-        Board board = new Board();
-        List<String> fensToEvaluate = new ArrayList<>();
-        List<String> moveSans = new ArrayList<>();
-        List<Boolean> sideToMove = new ArrayList<>();
-
-        // 1. Pre-calculate FENs for all moves (Fast)
-        fensToEvaluate.add(board.getFen()); // Start position
-        for (Move move : game.getHalfMoves()) {
-            sideToMove.add(board.getFen().contains(" w "));
-            moveSans.add(move.toString());
-            board.doMove(move);
-            fensToEvaluate.add(board.getFen());
+    /**
+     * As above, but with a positive {@code timeBudget} every ply is searched
+     * for a share of the budget ({@code go movetime}) instead of to the fixed
+     * depth: book positions and forced moves get less, and so do positions
+     * after the game is decided. The searches end within the budget whatever
+     * the game looks like. Budgets above chess.analysis.max-time-budget are
+     * cut to it.
+     * <p>
+     * The game's searches run in their own scope: if the listener throws (e.g.
+     * the client went away) or the calling thread is interrupted, the searches
+     * still queued or running for this game are cancelled before returning.
+     */
+    public AnalysisSummary analyzeGame(String pgnContent, AnalysisListener listener, Duration timeBudget)
+            throws Exception {
+        long start = System.nanoTime();
+        String outcome = "error";
+        timeBudget = budget(timeBudget);
+        ExecutorService searches = Executors.newThreadPerTaskExecutor(SEARCH_THREADS);
+        try {
+            AnalysisSummary summary = analyzeGame(pgnContent, listener, timeBudget, searches);
+            outcome = "success";
+            gamePlies.record(summary.getPlies());
+            return summary;
+        } catch (InterruptedException e) {
+            outcome = "cancelled";
+            searches.shutdownNow();
+            throw e;
+        } catch (Exception e) {
+            searches.shutdownNow();
+            throw e;
+        } finally {
+            searches.close();
+            Timer.builder("chess.analysis.game")
+                    .tag("scheduling", schedulingMode.name().toLowerCase())
+                    .tag("budgeted", String.valueOf(timeBudget.isPositive()))
+                    .tag("outcome", outcome)
+                    .description("Whole-game analysis latency")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
-        // Extract [%clk ...] timestamps from the raw PGN text
-        List<String> clockTimes = new ArrayList<>();
-        // Flexible pattern: match any combination of digits, colons, and dots inside
-        // [%clk ...]
-        Pattern clkPattern = Pattern.compile("\\[%clk\\s+([\\d:.]+)\\]");
-        Matcher clkMatcher = clkPattern.matcher(pgnContent);
-        while (clkMatcher.find()) {
-            String raw = clkMatcher.group(1);
-            // Optional: strip leading "0:" or "00:" if desired, but let's keep it robust
-            // Most chess sites use "0:05:00". If it starts with "0:", stripping it makes it
-            // "05:00"
-            if (raw.startsWith("0:")) {
-                raw = raw.substring(2);
-            } else if (raw.startsWith("00:")) {
-                raw = raw.substring(3);
+    private AnalysisSummary analyzeGame(String pgnContent, AnalysisListener listener, Duration timeBudget,
+            ExecutorService searches) throws Exception {
+        long start = System.nanoTime();
+        // 1. Parse and replay the game in one pass over the request text (Fast)
+        PgnParser.ParsedGame game = PgnParser.parse(pgnContent);
+        List<String> fensToEvaluate = game.fens();
+        List<String> moveSans = game.uciMoves();
+        List<Boolean> sideToMove = game.whiteToMove();
+        List<String> clockTimes = game.clockTimes();
+        List<Integer> materialSwings = game.materialSwings();
+
+        listener.onStart(moveSans.size());
+
+        // 2. Evaluate all FENs in parallel (The bottleneck), unless the same moves were
+        // analyzed with the same settings before
+        // One search per position keeps the score, best move and PV together, so
+        // classification below never has to go back to the engine.
+        boolean budgeted = timeBudget.isPositive();
+        AnalysisStore.Key storeKey = AnalysisStore.key(fensToEvaluate.getFirst(), moveSans, settings(timeBudget));
+        List<StockfishService.EvalResult> stored = analysisStore.get(storeKey);
+        List<CompletableFuture<StockfishService.EvalResult>> futures;
+        if (stored != null && stored.size() == fensToEvaluate.size()) {
+            futures = stored.stream().map(CompletableFuture::completedFuture).toList();
+        } else {
+            stored = null;
+            List<StockfishService.EvalResult> book = bookResults(fensToEvaluate);
+            double[] weights = null;
+            long deadline = 0;
+            if (budgeted) {
+                weights = plyWeights(fensToEvaluate);
+                deadline = start + (long) (timeBudget.toNanos() * BUDGET_SAFETY);
             }
-            clockTimes.add(raw);
+            futures = schedulingMode == SchedulingMode.ORDERED
+                    ? evaluateInOrder(game.startFen(), fensToEvaluate, moveSans, book, weights, deadline, searches)
+                    : evaluatePooled(fensToEvaluate, book, weights, deadline - start, deadline, searches);
         }
 
-        // 2. Evaluate all FENs in parallel (The bottleneck)
-        // Lowered depth to 14 for speed; it's plenty for accuracy scores.
-        int depth = 14;
-        List<CompletableFuture<StockfishService.EvalResult>> futures = fensToEvaluate.stream()
-                .map(fen -> CompletableFuture.supplyAsync(() -> {
-                    try {
-                        int rawEval = stockfishService.evaluatePosition(fen, depth);
-                        // Normalise so positive = good for side to move
-                        int normalized = fen.contains(" w ") ? rawEval : -rawEval;
-                        // We'll resolve the bestMove separately for each pre-move FEN
-                        return new StockfishService.EvalResult(normalized, null);
-                    } catch (Exception e) {
-                        return new StockfishService.EvalResult(0, null);
-                    }
-                }, executor))
-                .toList();
-
-        // Wait for all evaluations to finish
-        List<StockfishService.EvalResult> evalResults = futures.stream()
-                .map(CompletableFuture::join)
-                .toList();
-        List<Integer> evaluations = evalResults.stream().map(StockfishService.EvalResult::evaluation).toList();
-
         // 3. Process results and calculate CP Loss
-        List<MoveReview> reviews = new ArrayList<>();
+        // Each move only waits for the searches it needs (plies i-1..i+1), so the
+        // first reviews go out while later plies are still being searched. get()
+        // rather than join() so a cancelled caller stops waiting.
         int totalCpLoss = 0;
         boolean inBook = true;
 
         for (int i = 0; i < moveSans.size(); i++) {
-            int evalBefore = evaluations.get(i);
-            int evalAfter = evaluations.get(i + 1);
+            int evalBefore = futures.get(i).get().evaluation();
+            int evalAfter = futures.get(i + 1).get().evaluation();
             boolean isWhite = sideToMove.get(i);
 
             int cpLoss = isWhite ? Math.max(0, evalBefore - evalAfter) : Math.max(0, evalAfter - evalBefore);
             String fenAfter = fensToEvaluate.get(i + 1);
 
             // -- Brilliant Move Sacrifice Detection --
-            Board tempBoard = new Board();
-            tempBoard.loadFromFen(fensToEvaluate.get(i));
-            int b1 = calculateMaterialBalance(tempBoard, isWhite);
-
-            tempBoard.loadFromFen(fenAfter);
-            int b2 = calculateMaterialBalance(tempBoard, isWhite);
-            int maxLoss = calculateMaxMaterialLoss(tempBoard, isWhite);
-            int b3 = b2 - maxLoss;
-
             // Require at least 2 points of material loss (Exchange sacrifice or Minor piece
-            // for pawn)
-            // This prevents hanging a single pawn from generating a Brilliant evaluation.
-            boolean isSacrifice = (b3 - b1) <= -2;
+            // for pawn) after the opponent's best capture sequence, tracked while
+            // replaying the game. This prevents hanging a single pawn, or a defended
+            // trade, from generating a Brilliant evaluation.
+            boolean isSacrifice = materialSwings.get(i) <= -2;
 
             // -- Great Move Punishment Detection --
             // If the opponent previously made a severe mistake/blunder (>= 120 CP Loss)
             // and we find the absolute best response (CP Loss = 0), we grant a Great Find.
             boolean isPunishment = false;
             if (i > 0) {
-                int prevEvalBefore = evaluations.get(i - 1);
-                int prevEvalAfter = evaluations.get(i);
+                int prevEvalBefore = futures.get(i - 1).get().evaluation();
+                int prevEvalAfter = evalBefore;
                 boolean prevIsWhite = sideToMove.get(i - 1);
                 int prevCpLoss = prevIsWhite ? Math.max(0, prevEvalBefore - prevEvalAfter)
                         : Math.max(0, prevEvalAfter - prevEvalBefore);
@@ -149,8 +261,9 @@ public class ChessAnalysisService {
                 classification = classifyMove(cpLoss, isSacrifice, isPunishment);
             }
 
-            // For sub-optimal moves, ask engine what the best move was from before-position
+            // For sub-optimal moves, show what the engine preferred from the before-position
             String bestMoveUci = null;
+            List<String> bestLine = null;
             boolean isSubOptimal = classification.equals("Inaccuracy")
                     || classification.equals("Mistake")
                     || classification.equals("Miss")
@@ -158,52 +271,186 @@ public class ChessAnalysisService {
                     || classification.equals("Excellent")
                     || classification.equals("Good");
             if (isSubOptimal) {
-                try {
-                    StockfishService.EvalResult bestResult = stockfishService
-                            .evaluateWithBestMove(fensToEvaluate.get(i), depth);
-                    bestMoveUci = bestResult.bestMove();
-                } catch (Exception ignored) {
-                }
+                bestMoveUci = futures.get(i).get().bestMove();
+                bestLine = futures.get(i).get().pv();
             }
 
-            reviews.add(new MoveReview(
+            // The share of "Book" among these is the book-hit ratio
+            meterRegistry.counter("chess.analysis.moves", "classification", classification).increment();
+
+            listener.onMove(i, new MoveReview(
                     moveSans.get(i),
                     cpLoss,
                     evalAfter,
                     classification,
                     fenAfter,
                     bestMoveUci,
-                    i < clockTimes.size() ? clockTimes.get(i) : null));
+                    clockTimes.get(i),
+                    bestLine));
             totalCpLoss += cpLoss;
         }
 
-        double avgCpLoss = !reviews.isEmpty() ? (double) totalCpLoss / reviews.size() : 0.0;
+        boolean complete = true;
+        if (stored == null) {
+            // Identity, not equals(): a stalemate legitimately scores 0 with no best move. Plies cut
+            // short by the search deadline are shallower than the store key promises
+            List<StockfishService.EvalResult> results = new ArrayList<>(futures.size());
+            for (CompletableFuture<StockfishService.EvalResult> future : futures) {
+                StockfishService.EvalResult result = future.get();
+                complete &= result != NO_RESULT && !result.truncated();
+                results.add(result);
+            }
+            if (complete) {
+                analysisStore.put(storeKey, results);
+            }
+        }
+
+        double avgCpLoss = !moveSans.isEmpty() ? (double) totalCpLoss / moveSans.size() : 0.0;
         double accuracy = Math.max(0, 100 - (avgCpLoss / 10));
 
-        String whitePlayer = game.getWhitePlayer() != null ? game.getWhitePlayer().toString() : "White";
-        String blackPlayer = game.getBlackPlayer() != null ? game.getBlackPlayer().toString() : "Black";
+        String whitePlayer = game.header("White", "White");
+        String blackPlayer = game.header("Black", "Black");
+        String whiteElo = digitsOr(game.header("WhiteElo", "?"), "?");
+        String blackElo = digitsOr(game.header("BlackElo", "?"), "?");
+        String timeControl = digitsOr(game.header("TimeControl", "10:00"), "10:00");
+
+        Opening opening = openingBookService.classify(moveSans, fensToEvaluate);
+
+        return new AnalysisSummary(accuracy, moveSans.size(), whitePlayer, blackPlayer, whiteElo, blackElo,
+                timeControl, opening, game.startFen(), complete);
+    }
+
+    /**
+     * Scores for the game's opening that need no search: leading positions
+     * whose move leads to another book position, so the move is classified
+     * Book and only its score is shown. They come from the precomputed book
+     * table, up to the first position it lacks. The last book position is
+     * left to the engine, since the first move out of book needs its best
+     * move and full score.
+     */
+    private List<StockfishService.EvalResult> bookResults(List<String> fens) {
+        List<StockfishService.EvalResult> results = new ArrayList<>();
+        for (int ply = 0; ply + 1 < fens.size() && openingBookService.isBookPosition(fens.get(ply + 1)); ply++) {
+            StockfishService.EvalResult result = openingBookService.bookEvaluation(fens.get(ply));
+            if (result == null) {
+                break;
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Relative search time per position for budgeted analysis: theory and
+     * forced positions need far less than the rest.
+     */
+    private double[] plyWeights(List<String> fens) {
+        double[] weights = new double[fens.size()];
+        boolean inBook = true;
+        Board board = new Board();
+        for (int ply = 0; ply < fens.size(); ply++) {
+            inBook = inBook && openingBookService.isBookPosition(fens.get(ply));
+            if (inBook) {
+                weights[ply] = TimeBudget.BOOK;
+            } else {
+                board.loadFromFen(fens.get(ply));
+                weights[ply] = board.legalMoves().size() <= 1 ? TimeBudget.FORCED : TimeBudget.NORMAL;
+            }
+        }
+        return weights;
+    }
 
-        // Extract Elo using regex for maximum reliability
-        String whiteElo = "?";
-        String blackElo = "?";
+    /**
+     * One task per position on whichever engine is free, after the
+     * {@code book} plies. With a budget, the positions run as many at a time
+     * as batch work gets engines, so each gets its weighted share of
+     * {@code budgetNanos} times that capacity. Positions that cannot get an
+     * engine before {@code deadline} are not searched.
+     */
+    private List<CompletableFuture<StockfishService.EvalResult>> evaluatePooled(List<String> fens,
+            List<StockfishService.EvalResult> book, double[] weights, long budgetNanos, long deadline,
+            ExecutorService searches) {
+        double totalWeight = weights != null ? Arrays.stream(weights, book.size(), fens.size()).sum() : 0;
+        List<CompletableFuture<StockfishService.EvalResult>> futures = new ArrayList<>(fens.size());
+        for (StockfishService.EvalResult result : book) {
+            futures.add(CompletableFuture.completedFuture(result));
+        }
+        for (int ply = book.size(); ply < fens.size(); ply++) {
+            String fen = fens.get(ply);
+            StockfishService.SearchLimit limit = weights == null
+                    ? StockfishService.SearchLimit.toDepth(depth)
+                    : StockfishService.SearchLimit.forTime(Math.max(TimeBudget.MIN_MOVETIME_MS,
+                            (long) (budgetNanos / 1e6 * stockfishService.getBatchCapacity() * weights[ply] / totalWeight)
+                                    - TimeBudget.OVERHEAD_MS), depth).until(deadline);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return normalize(fen, stockfishService.evaluateWithBestMove(fen, limit,
+                            StockfishService.Lane.BATCH));
+                } catch (Exception e) {
+                    return NO_RESULT;
+                }
+            }, searches));
+        }
+        return futures;
+    }
 
-        Pattern whiteEloPattern = Pattern.compile("\\[WhiteElo\\s+\"(\\d+)\"\\]");
-        Matcher whiteEloMatcher = whiteEloPattern.matcher(pgnContent);
-        if (whiteEloMatcher.find())
-            whiteElo = whiteEloMatcher.group(1);
+    /**
+     * Splits the game after the {@code book} plies into one contiguous ply
+     * range per engine so consecutive positions share a transposition table.
+     * With {@code weights}, each range spreads the time until {@code deadline}
+     * over its plies via a {@link TimeBudget}; otherwise every ply is searched
+     * to the fixed depth.
+     */
+    private List<CompletableFuture<StockfishService.EvalResult>> evaluateInOrder(String startFen,
+            List<String> fens, List<String> uciMoves, List<StockfishService.EvalResult> book, double[] weights,
+            long deadline, ExecutorService searches) {
+        List<CompletableFuture<StockfishService.EvalResult>> futures = new ArrayList<>(fens.size());
+        for (StockfishService.EvalResult result : book) {
+            futures.add(CompletableFuture.completedFuture(result));
+        }
+        for (int i = book.size(); i < fens.size(); i++) {
+            futures.add(new CompletableFuture<>());
+        }
 
-        Pattern blackEloPattern = Pattern.compile("\\[BlackElo\\s+\"(\\d+)\"\\]");
-        Matcher blackEloMatcher = blackEloPattern.matcher(pgnContent);
-        if (blackEloMatcher.find())
-            blackElo = blackEloMatcher.group(1);
+        // bookResults() always leaves the last position to search, so this is at least 1
+        int searched = fens.size() - book.size();
+        int chunks = Math.min(stockfishService.getBatchCapacity(), searched);
+        int chunkSize = (searched + chunks - 1) / chunks;
+        for (int from = book.size(); from < fens.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(fens.size(), from + chunkSize) - 1;
+            TimeBudget budget = weights != null ? new TimeBudget(weights, end, deadline, depth) : null;
+            IntFunction<StockfishService.SearchLimit> limits = budget != null
+                    ? budget::limitFor
+                    : ply -> StockfishService.SearchLimit.toDepth(depth);
+            searches.execute(() -> {
+                try {
+                    stockfishService.evaluateLine(startFen, fens, uciMoves, start, end, limits, (ply, raw) -> {
+                        if (budget != null) {
+                            budget.onResult(raw);
+                        }
+                        futures.get(ply).complete(normalize(fens.get(ply), raw));
+                    });
+                } catch (Exception e) {
+                    // Plies not reached before the failure fall back to 0, as in POOLED mode
+                    for (int ply = start; ply <= end; ply++) {
+                        futures.get(ply).complete(NO_RESULT);
+                    }
+                }
+            });
+        }
+        return futures;
+    }
 
-        String timeControl = "10:00";
-        Pattern timeControlPattern = Pattern.compile("\\[TimeControl\\s+\"(\\d+)\"\\]");
-        Matcher timeControlMatcher = timeControlPattern.matcher(pgnContent);
-        if (timeControlMatcher.find())
-            timeControl = timeControlMatcher.group(1);
+    /** Flips engine scores (side to move) so positive = good for White. */
+    private StockfishService.EvalResult normalize(String fen, StockfishService.EvalResult raw) {
+        int normalized = fen.contains(" w ") ? raw.evaluation() : -raw.evaluation();
+        return new StockfishService.EvalResult(normalized, raw.bestMove(), raw.pv(), raw.truncated());
+    }
 
-        return new AnalysisResponse(accuracy, reviews, whitePlayer, blackPlayer, whiteElo, blackElo, timeControl);
+    /** Keeps numeric tag values such as Elo ratings; anything else ("-", "?", "600+5") gets the fallback. */
+    private static String digitsOr(String value, String fallback) {
+        return !value.isEmpty() && value.chars().allMatch(Character::isDigit) ? value : fallback;
     }
 
     public int evaluatePosition(String fen, int depth) throws Exception {
@@ -237,70 +484,4 @@ public class ChessAnalysisService {
             return "Miss";
         return "Blunder";
     }
-
-    private int getPieceValue(com.github.bhlangonijr.chesslib.Piece piece) {
-        if (piece == null || piece == com.github.bhlangonijr.chesslib.Piece.NONE)
-            return 0;
-        switch (piece.getPieceType()) {
-            case PAWN:
-                return 1;
-            case KNIGHT:
-            case BISHOP:
-                return 3;
-            case ROOK:
-                return 5;
-            case QUEEN:
-                return 9;
-            default:
-                return 0;
-        }
-    }
-
-    private int calculateMaterialBalance(Board board, boolean forWhite) {
-        int whiteScore = 0;
-        int blackScore = 0;
-        for (com.github.bhlangonijr.chesslib.Square sq : com.github.bhlangonijr.chesslib.Square.values()) {
-            if (sq == com.github.bhlangonijr.chesslib.Square.NONE)
-                continue;
-            com.github.bhlangonijr.chesslib.Piece p = board.getPiece(sq);
-            if (p != com.github.bhlangonijr.chesslib.Piece.NONE) {
-                int val = getPieceValue(p);
-                if (p.getPieceSide() == com.github.bhlangonijr.chesslib.Side.WHITE)
-                    whiteScore += val;
-                else
-                    blackScore += val;
-            }
-        }
-        return forWhite ? (whiteScore - blackScore) : (blackScore - whiteScore);
-    }
-
-    private int calculateMaxMaterialLoss(Board boardAfter, boolean weAreWhite) {
-        com.github.bhlangonijr.chesslib.Side ourSide = weAreWhite ? com.github.bhlangonijr.chesslib.Side.WHITE
-                : com.github.bhlangonijr.chesslib.Side.BLACK;
-
-        int maxLoss = 0;
-        List<Move> captures = boardAfter.pseudoLegalCaptures();
-        for (Move move : captures) {
-            com.github.bhlangonijr.chesslib.Piece capturedPiece = boardAfter.getPiece(move.getTo());
-            com.github.bhlangonijr.chesslib.Piece capturingPiece = boardAfter.getPiece(move.getFrom());
-
-            if (capturedPiece != null && capturedPiece != com.github.bhlangonijr.chesslib.Piece.NONE
-                    && capturedPiece.getPieceSide() == ourSide) {
-
-                int capturedValue = getPieceValue(capturedPiece);
-                int capturingValue = getPieceValue(capturingPiece);
-
-                boolean isProtected = boardAfter.squareAttackedBy(move.getTo(), ourSide) != 0L;
-
-                if (!isProtected) {
-                    maxLoss = Math.max(maxLoss, capturedValue);
-                } else {
-                    if (capturedValue > capturingValue) {
-                        maxLoss = Math.max(maxLoss, capturedValue - capturingValue);
-                    }
-                }
-            }
-        }
-        return maxLoss;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,153 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.AnalysisResponse;
+import com.chess.analysis.model.MoveReview;
+import com.chess.analysis.model.Opening;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an {@link AnalysisResponse} as compact JSON for API clients,
+ * straight to the output stream. Columns instead of one object per move:
+ * <pre>
+ * {"v":2, "white":..., "black":..., "whiteElo":..., "blackElo":..., "timeControl":...,
+ *  "accuracy":87.4, "opening":{"eco":"C65","name":...,"plies":8},
+ *  "startFen":...,                     only when the game does not start from the initial position
+ *  "moves":["e2e4","e7e5",...],        UCI, one per ply; positions are replayed from these
+ *  "evals":[31,25,...],                centipawns after each move, White's view
+ *  "losses":[0,6,...],                 centipawn loss of each move
+ *  "labels":["Book","Best",...], "classes":[0,0,1,...],   classification as an index into labels
+ *  "lines":{"17":["d2d4","e5d4"]},     engine line from the position before ply 17, starting with
+ *                                      the best move; only for plies that have one
+ *  "clocks":["4:57",null,...],        remaining clock per ply, only when the PGN had any
+ *  "complete":false}                   only when searches failed and some scores are 0 stand-ins
+ * </pre>
+ * The FEN every {@link MoveReview} carries is left out: it follows from the
+ * start position and the moves, and is most of the size of the full form.
+ */
+@Service
+public class CompactAnalysisWriter {
+
+    /** Bumped whenever the layout changes; part of every ETag. */
+    public static final int VERSION = 2;
+
+    private final ObjectWriter writer;
+
+    public CompactAnalysisWriter(ObjectMapper objectMapper) {
+        this.writer = objectMapper.writer().without(StreamWriteFeature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Weak ETag for the analysis of {@code pgn} with the given result
+     * settings (see ChessAnalysisService.resultSettings) in this layout
+     * version, known before anything is searched, so a client that already
+     * holds it is answered without touching the engines. Weak because a game
+     * that has dropped out of the {@link AnalysisStore} is searched again and
+     * a timed search need not score the same twice.
+     */
+    public String etag(String pgn, String settings) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(("v" + VERSION + "|" + settings + "|").getBytes(StandardCharsets.UTF_8));
+        digest.update(pgn.strip().getBytes(StandardCharsets.UTF_8));
+        return "W/\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    /** Writes {@code analysis}; the stream is flushed but left open. */
+    public void write(AnalysisResponse analysis, OutputStream out) {
+        List<MoveReview> moves = analysis.getMoves();
+        int plies = moves.size();
+        try (JsonGenerator json = writer.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeNumberProperty("v", VERSION);
+            json.writeStringProperty("white", analysis.getWhitePlayer());
+            json.writeStringProperty("black", analysis.getBlackPlayer());
+            json.writeStringProperty("whiteElo", analysis.getWhiteElo());
+            json.writeStringProperty("blackElo", analysis.getBlackElo());
+            json.writeStringProperty("timeControl", analysis.getTimeControl());
+            json.writeNumberProperty("accuracy", Math.round(analysis.getAccuracy() * 10) / 10.0);
+            Opening opening = analysis.getOpening();
+            if (opening != null) {
+                json.writeObjectPropertyStart("opening");
+                json.writeStringProperty("eco", opening.getEco());
+                json.writeStringProperty("name", opening.getName());
+                json.writeNumberProperty("plies", opening.getPlies());
+                json.writeEndObject();
+            }
+            if (analysis.getStartFen() != null) {
+                json.writeStringProperty("startFen", analysis.getStartFen());
+            }
+
+            String[] uciMoves = new String[plies];
+            int[] evals = new int[plies];
+            int[] losses = new int[plies];
+            int[] classes = new int[plies];
+            Map<String, Integer> labels = new LinkedHashMap<>();
+            boolean clocks = false;
+            for (int i = 0; i < plies; i++) {
+                MoveReview move = moves.get(i);
+                uciMoves[i] = move.getMove();
+                evals[i] = move.getEvaluation();
+                losses[i] = move.getCentipawnLoss();
+                classes[i] = labels.computeIfAbsent(move.getClassification(), label -> labels.size());
+                clocks |= move.getClockTime() != null;
+            }
+            json.writeName("moves");
+            json.writeArray(uciMoves, 0, plies);
+            json.writeName("evals");
+            json.writeArray(evals, 0, plies);
+            json.writeName("losses");
+            json.writeArray(losses, 0, plies);
+            json.writeName("labels");
+            json.writeArray(labels.keySet().toArray(String[]::new), 0, labels.size());
+            json.writeName("classes");
+            json.writeArray(classes, 0, plies);
+
+            json.writeObjectPropertyStart("lines");
+            for (int i = 0; i < plies; i++) {
+                List<String> line = line(moves.get(i));
+                if (line != null) {
+                    json.writeName(String.valueOf(i));
+                    json.writeArray(line.toArray(String[]::new), 0, line.size());
+                }
+            }
+            json.writeEndObject();
+
+            if (clocks) {
+                json.writeArrayPropertyStart("clocks");
+                for (MoveReview move : moves) {
+                    json.writeString(move.getClockTime());
+                }
+                json.writeEndArray();
+            }
+            if (!analysis.isComplete()) {
+                json.writeBooleanProperty("complete", false);
+            }
+            json.writeEndObject();
+        }
+    }
+
+    // The PV already starts with the best move; a bare best move stands in when there is no PV
+    private static List<String> line(MoveReview move) {
+        if (move.getBestLine() != null && !move.getBestLine().isEmpty()) {
+            return move.getBestLine();
+        }
+        return move.getBestMove() != null ? List.of(move.getBestMove()) : null;
+    }
+}
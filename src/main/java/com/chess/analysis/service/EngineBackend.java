@@ -0,0 +1,29 @@
+package com.chess.analysis.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Where searches run: {@link StockfishService}'s pool of local Stockfish
+ * processes, or {@link RemoteEngines}, which hands them to
+ * {@link EngineWorker}s on other hosts ({@code chess.engine.backend}). A
+ * worker in turn serves whatever backend it is given, normally a local
+ * {@link StockfishService}.
+ */
+interface EngineBackend {
+
+    StockfishService.EvalResult evaluateWithBestMove(String fen, StockfishService.SearchLimit limit,
+            StockfishService.Lane lane) throws IOException, InterruptedException;
+
+    /** See {@link StockfishService#evaluateLine(String, List, List, int, int, IntFunction, BiConsumer)}. */
+    void evaluateLine(String startFen, List<String> fens, List<String> uciMoves, int fromPly, int toPly,
+            IntFunction<StockfishService.SearchLimit> limits,
+            BiConsumer<Integer, StockfishService.EvalResult> onResult) throws IOException, InterruptedException;
+
+    int getPoolSize();
+
+    /** Searches batch analysis can run at once. */
+    int getBatchCapacity();
+}
@@ -0,0 +1,233 @@
+package com.chess.analysis.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Idle engines shared by two lanes. {@link StockfishService.Lane#INTERACTIVE}
+ * callers take any idle engine. {@link StockfishService.Lane#BATCH} callers
+ * leave {@code reserved} engines idle for interactive requests and wait while
+ * any interactive caller is waiting, so batch analysis can saturate the rest
+ * of the pool without making the live board queue behind it.
+ * <p>
+ * Slots whose engine could not be restarted are {@link #quarantine()}d. The
+ * reserve shrinks with them so that batch work always keeps one of the engines
+ * still running: otherwise, with two slots and one quarantined, the last engine
+ * would be held for interactive requests and batch callers would wait forever.
+ * <p>
+ * Idle engines are handed out in FIFO order, as with the blocking queue this
+ * replaced.
+ */
+final class EnginePool<T> {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<T> idle = new ArrayDeque<>();
+    private final int size;
+    private final int reserved;
+    private int quarantined;
+    private volatile int interactiveWaiting;
+    private int batchWaiting;
+    private final Map<StockfishService.Lane, WaitStats> waits = new EnumMap<>(StockfishService.Lane.class);
+
+    EnginePool(int size, int reserved) {
+        this.size = size;
+        this.reserved = reserved;
+        for (StockfishService.Lane lane : StockfishService.Lane.values()) {
+            waits.put(lane, new WaitStats());
+        }
+    }
+
+    T acquire(StockfishService.Lane lane) throws InterruptedException {
+        return acquire(lane, 0);
+    }
+
+    /**
+     * Same as above, but gives up and returns null once {@link System#nanoTime}
+     * passes {@code deadlineNanos} (0 = wait as long as it takes).
+     */
+    T acquire(StockfishService.Lane lane, long deadlineNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        T engine;
+        lock.lockInterruptibly();
+        try {
+            if (lane == StockfishService.Lane.INTERACTIVE) {
+                interactiveWaiting++;
+                try {
+                    while (idle.isEmpty()) {
+                        if (!await(deadlineNanos)) {
+                            return null;
+                        }
+                    }
+                } finally {
+                    interactiveWaiting--;
+                    // Batch callers held back by this one may proceed now
+                    changed.signalAll();
+                }
+            } else {
+                batchWaiting++;
+                try {
+                    while (idle.size() <= reserved() || interactiveWaiting > 0) {
+                        if (!await(deadlineNanos)) {
+                            return null;
+                        }
+                    }
+                } finally {
+                    batchWaiting--;
+                }
+            }
+            engine = idle.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+        waits.get(lane).record(System.nanoTime() - start);
+        return engine;
+    }
+
+    /** Waits for the next change; false, without waiting, once the deadline has passed. */
+    private boolean await(long deadlineNanos) throws InterruptedException {
+        if (deadlineNanos == 0) {
+            changed.await();
+            return true;
+        }
+        long left = deadlineNanos - System.nanoTime();
+        if (left <= 0) {
+            return false;
+        }
+        changed.awaitNanos(left);
+        return true;
+    }
+
+    void release(T engine) {
+        lock.lock();
+        try {
+            idle.addLast(engine);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Marks a slot as having no engine; waiting batch callers may now get a reserved one. */
+    void quarantine() {
+        lock.lock();
+        try {
+            quarantined++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes one slot out of quarantine, to be retried: the caller then either
+     * {@link #release}s a new engine for it or quarantines it again. False if
+     * no slot is quarantined.
+     */
+    boolean unquarantine() {
+        lock.lock();
+        try {
+            if (quarantined == 0) {
+                return false;
+            }
+            quarantined--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int quarantinedCount() {
+        lock.lock();
+        try {
+            return quarantined;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Engines batch callers leave idle: the configured reserve, less quarantined slots. */
+    int reserved() {
+        lock.lock();
+        try {
+            return Math.max(0, Math.min(reserved, size - quarantined - 1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Takes an idle engine without waiting (for maintenance); null if none. */
+    T poll() {
+        lock.lock();
+        try {
+            return idle.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes and returns every idle engine. */
+    List<T> drain() {
+        lock.lock();
+        try {
+            List<T> engines = new ArrayList<>(idle);
+            idle.clear();
+            return engines;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int idleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** True while an interactive caller waits: batch work holding an engine should give it back. */
+    boolean interactiveWaiting() {
+        return interactiveWaiting > 0;
+    }
+
+    StockfishService.LaneStats stats(StockfishService.Lane lane) {
+        int waiting;
+        lock.lock();
+        try {
+            waiting = lane == StockfishService.Lane.INTERACTIVE ? interactiveWaiting : batchWaiting;
+        } finally {
+            lock.unlock();
+        }
+        return waits.get(lane).snapshot(waiting);
+    }
+
+    private static final class WaitStats {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        StockfishService.LaneStats snapshot(int waiting) {
+            long n = count.sum();
+            double meanMs = n > 0 ? totalNanos.sum() / (double) n / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+            double maxMs = maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+            return new StockfishService.LaneStats(n, waiting, meanMs, maxMs);
+        }
+    }
+}
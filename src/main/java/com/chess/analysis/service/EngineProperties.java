@@ -0,0 +1,58 @@
+package com.chess.analysis.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The {@code chess.engine.*} settings of {@link StockfishService} (documented
+ * in application.properties). Tools that run a pool outside Spring start from
+ * {@link #defaults()} and change what they need with the {@code with} methods.
+ */
+@ConfigurationProperties("chess.engine")
+public record EngineProperties(
+        @DefaultValue("30s") Duration searchTimeout,
+        @DefaultValue("30s") Duration healthCheckInterval,
+        @DefaultValue("3") int maxStrikes,
+        @DefaultValue("0") int poolSize,
+        @DefaultValue("1") int threads,
+        @DefaultValue("16") int hashMb,
+        @DefaultValue("false") boolean calibrateOnStartup,
+        @DefaultValue("12") int calibrationDepth,
+        @DefaultValue("1") int interactiveReserved,
+        String path,
+        @DefaultValue("LOCAL") StockfishService.Backend backend,
+        List<String> workers) {
+
+    public EngineProperties {
+        workers = workers != null ? List.copyOf(workers) : List.of();
+    }
+
+    /** The values above, with the engine binary taken from STOCKFISH_PATH as in application.properties. */
+    public static EngineProperties defaults() {
+        return new EngineProperties(Duration.ofSeconds(30), Duration.ofSeconds(30), 3, 0, 1, 16, false, 12, 1,
+                System.getenv("STOCKFISH_PATH"), StockfishService.Backend.LOCAL, List.of());
+    }
+
+    public EngineProperties withPath(String path) {
+        return new EngineProperties(searchTimeout, healthCheckInterval, maxStrikes, poolSize, threads, hashMb,
+                calibrateOnStartup, calibrationDepth, interactiveReserved, path, backend, workers);
+    }
+
+    public EngineProperties withPoolSize(int poolSize) {
+        return new EngineProperties(searchTimeout, healthCheckInterval, maxStrikes, poolSize, threads, hashMb,
+                calibrateOnStartup, calibrationDepth, interactiveReserved, path, backend, workers);
+    }
+
+    public EngineProperties withInteractiveReserved(int interactiveReserved) {
+        return new EngineProperties(searchTimeout, healthCheckInterval, maxStrikes, poolSize, threads, hashMb,
+                calibrateOnStartup, calibrationDepth, interactiveReserved, path, backend, workers);
+    }
+
+    public EngineProperties withTimeouts(Duration searchTimeout, Duration healthCheckInterval) {
+        return new EngineProperties(searchTimeout, healthCheckInterval, maxStrikes, poolSize, threads, hashMb,
+                calibrateOnStartup, calibrationDepth, interactiveReserved, path, backend, workers);
+    }
+}
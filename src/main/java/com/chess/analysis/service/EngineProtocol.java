@@ -0,0 +1,124 @@
+package com.chess.analysis.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between {@link RemoteEngines} and {@link EngineWorker}. Every
+ * frame is a big-endian length, a type byte and the body; strings are
+ * {@link DataOutput#writeUTF} with "" for null.
+ * <pre>
+ *   worker -> HELLO   version, engines, batch capacity, active requests   (once, on accept)
+ *   client -> SEARCH  fen, limit, lane                  worker -> RESULT or ERROR
+ *   client -> LINE    start FEN, FENs, moves, from, to  then per ply:
+ *   client -> LIMIT   limit                             worker -> RESULT or ERROR
+ * </pre>
+ * A limit is depth and movetime (0 = to depth). A RESULT carries the
+ * evaluation, best move, PV, whether the search was cut short by the worker's
+ * deadline and how many other requests the worker is running, which the client uses to spread load. After an ERROR the client
+ * drops the connection.
+ */
+final class EngineProtocol {
+
+    static final int VERSION = 2;
+    static final int MAX_FRAME_BYTES = 1 << 20;
+
+    static final byte HELLO = 1;
+    static final byte SEARCH = 2;
+    static final byte LINE = 3;
+    static final byte LIMIT = 4;
+    static final byte RESULT = 5;
+    static final byte ERROR = 6;
+
+    /** One received frame: its type and a reader over the body. */
+    record Frame(byte type, DataInputStream body) {
+    }
+
+    @FunctionalInterface
+    interface Body {
+        void write(DataOutput out) throws IOException;
+    }
+
+    private EngineProtocol() {
+    }
+
+    /** Writes one frame and flushes it. */
+    static void send(DataOutputStream out, byte type, Body body) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buffer);
+        data.writeByte(type);
+        body.write(data);
+        out.writeInt(buffer.size());
+        buffer.writeTo(out);
+        out.flush();
+    }
+
+    /** Reads one frame; EOFException when the peer closed between frames. */
+    static Frame receive(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        DataInputStream body = new DataInputStream(new ByteArrayInputStream(bytes, 1, length - 1));
+        return new Frame(bytes[0], body);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        out.writeUTF(value != null ? value : "");
+    }
+
+    static String readString(DataInput in) throws IOException {
+        String value = in.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+
+    static void writeStrings(DataOutput out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    static List<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0 || size > MAX_FRAME_BYTES / 2) {
+            throw new IOException("Bad list length " + size);
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    static void writeLimit(DataOutput out, StockfishService.SearchLimit limit) throws IOException {
+        out.writeInt(limit.depth());
+        out.writeLong(limit.moveTimeMs());
+    }
+
+    static StockfishService.SearchLimit readLimit(DataInput in) throws IOException {
+        return new StockfishService.SearchLimit(in.readInt(), in.readLong());
+    }
+
+    static void writeResult(DataOutput out, StockfishService.EvalResult result, int active) throws IOException {
+        out.writeInt(result.evaluation());
+        writeString(out, result.bestMove());
+        writeStrings(out, result.pv());
+        out.writeBoolean(result.truncated());
+        out.writeInt(active);
+    }
+
+    static StockfishService.EvalResult readResult(DataInput in) throws IOException {
+        return new StockfishService.EvalResult(in.readInt(), readString(in), List.copyOf(readStrings(in)),
+                in.readBoolean());
+    }
+}
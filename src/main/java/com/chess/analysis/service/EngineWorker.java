@@ -0,0 +1,301 @@
+package com.chess.analysis.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves an engine backend, normally a local {@link StockfishService} pool,
+ * to {@link RemoteEngines} on app nodes over the {@link EngineProtocol}, so
+ * engine capacity can be added on other hosts. Each connection is handled on
+ * its own virtual thread and carries one request at a time; lanes, caching,
+ * supervision and retries are the local pool's.
+ * <p>
+ * The protocol has no authentication, so the worker listens on loopback
+ * unless given a bind address; expose it only on a network the app nodes
+ * alone can reach. A client that stays silent longer than the client
+ * timeout is dropped, also in the middle of a line, so it cannot keep an
+ * engine. Requests are checked before they reach an engine (see
+ * {@link PositionValidator}); bad ones are answered with ERROR.
+ * <p>
+ * {@code EngineWorker <port> [engines] [bind-address]} with the engine taken
+ * from {@code STOCKFISH_PATH} (engines 0 = one per spare core, bind address
+ * 127.0.0.1 by default), e.g. from the boot jar: {@code java -cp app.jar
+ * -Dloader.main=com.chess.analysis.service.EngineWorker
+ * org.springframework.boot.loader.launch.PropertiesLauncher 7070 0 0.0.0.0}.
+ */
+public final class EngineWorker implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EngineWorker.class);
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+    private static final Duration SEARCH_TIMEOUT = Duration.ofSeconds(30);
+    // A client only goes quiet between frames while it handles a result; a
+    // search itself never waits on the client and is stopped at SEARCH_TIMEOUT
+    private static final Duration CLIENT_TIMEOUT = SEARCH_TIMEOUT.multipliedBy(2);
+    private static final int MAX_DEPTH = 99;
+
+    private final EngineBackend engines;
+    private final ServerSocket server;
+    private final int clientTimeoutMs;
+    // Open connections and the virtual threads serving them
+    private final Map<Socket, Thread> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    // Guarded by connections
+    private boolean closed;
+
+    EngineWorker(EngineBackend engines, InetAddress bindAddress, int port, Duration clientTimeout)
+            throws IOException {
+        this.engines = engines;
+        this.server = new ServerSocket(port, 0, bindAddress);
+        this.clientTimeoutMs = (int) Math.min(Integer.MAX_VALUE, clientTimeout.toMillis());
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: EngineWorker <port> [engines] [bind-address]");
+            System.exit(2);
+        }
+        int port = Integer.parseInt(args[0]);
+        int engines = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        InetAddress bindAddress = args.length > 2 ? InetAddress.getByName(args[2]) : InetAddress.getLoopbackAddress();
+
+        StockfishService stockfish = new StockfishService(new EvaluationCache(1 << 16, true),
+                new SimpleMeterRegistry(), EngineProperties.defaults().withPoolSize(engines)
+                        .withTimeouts(SEARCH_TIMEOUT, Duration.ofSeconds(30)));
+        stockfish.initPool();
+        EngineWorker worker = new EngineWorker(stockfish, bindAddress, port, CLIENT_TIMEOUT);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            worker.close();
+            stockfish.destroyPool();
+        }));
+        log.info("Engine worker serving {} engine(s) on {}:{}", stockfish.getPoolSize(),
+                bindAddress.getHostAddress(), worker.port());
+        worker.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /** Accepts connections on a background thread until {@link #close}. */
+    void start() {
+        Thread.ofPlatform().name("engine-worker-accept").start(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread thread = Thread.ofVirtual().name("engine-worker-" + socket.getPort())
+                            .unstarted(() -> serve(socket));
+                    // A blocked accept can still return a connection after close()
+                    synchronized (connections) {
+                        if (closed) {
+                            socket.close();
+                            break;
+                        }
+                        connections.put(socket, thread);
+                    }
+                    thread.start();
+                } catch (IOException e) {
+                    if (!server.isClosed()) {
+                        log.warn("Accept failed: {}", e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    /** Stops accepting, breaks off running requests and waits for their threads to finish. */
+    @Override
+    public void close() {
+        synchronized (connections) {
+            closed = true;
+        }
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Ignore
+        }
+        connections.forEach((socket, thread) -> {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+            thread.interrupt();
+        });
+        for (Thread thread : connections.values()) {
+            try {
+                thread.join(CLOSE_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(clientTimeoutMs);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            EngineProtocol.send(out, EngineProtocol.HELLO, body -> {
+                body.writeInt(EngineProtocol.VERSION);
+                body.writeInt(engines.getPoolSize());
+                body.writeInt(engines.getBatchCapacity());
+                body.writeInt(active.get());
+            });
+            while (true) {
+                EngineProtocol.Frame request;
+                try {
+                    request = EngineProtocol.receive(in);
+                } catch (SocketTimeoutException e) {
+                    // Idle past the client timeout; the client reconnects when it needs us
+                    break;
+                }
+                active.incrementAndGet();
+                try {
+                    switch (request.type()) {
+                        case EngineProtocol.SEARCH -> search(request.body(), out);
+                        case EngineProtocol.LINE -> line(request.body(), in, out);
+                        // The first limit of a line refused with ERROR, sent before the client saw it
+                        case EngineProtocol.LIMIT -> {
+                        }
+                        default -> throw new IOException("Unexpected frame type " + request.type());
+                    }
+                } finally {
+                    active.decrementAndGet();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Client went away
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Dropping connection from {}: {}", socket.getRemoteSocketAddress(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private void search(DataInputStream request, DataOutputStream out) throws IOException, InterruptedException {
+        String fen = EngineProtocol.readString(request);
+        StockfishService.SearchLimit limit = EngineProtocol.readLimit(request);
+        byte lane = request.readByte();
+        StockfishService.EvalResult result;
+        try {
+            fen = PositionValidator.checkFen(fen);
+            checkLimit(limit);
+            result = engines.evaluateWithBestMove(fen, limit, lane(lane));
+        } catch (IOException | IllegalArgumentException e) {
+            sendError(out, e);
+            return;
+        }
+        EngineProtocol.send(out, EngineProtocol.RESULT,
+                body -> EngineProtocol.writeResult(body, result, active.get() - 1));
+    }
+
+    /**
+     * Runs the line in lock step with the client: each ply's limit is read
+     * from the connection just before it is searched, so the client can still
+     * hand out a time budget based on the results so far.
+     */
+    private void line(DataInputStream request, DataInputStream in, DataOutputStream out)
+            throws IOException, InterruptedException {
+        String startFen = EngineProtocol.readString(request);
+        List<String> fens = EngineProtocol.readStrings(request);
+        List<String> uciMoves = EngineProtocol.readStrings(request);
+        int fromPly = request.readInt();
+        int toPly = request.readInt();
+        try {
+            checkLine(startFen, fens, uciMoves, fromPly, toPly);
+        } catch (IllegalArgumentException e) {
+            sendError(out, e);
+            return;
+        }
+        try {
+            engines.evaluateLine(startFen, fens, uciMoves, fromPly, toPly, ply -> {
+                try {
+                    EngineProtocol.Frame frame = EngineProtocol.receive(in);
+                    if (frame.type() != EngineProtocol.LIMIT) {
+                        throw new IOException("Expected a limit for ply " + ply + ", got frame type " + frame.type());
+                    }
+                    StockfishService.SearchLimit limit = EngineProtocol.readLimit(frame.body());
+                    checkLimit(limit);
+                    return limit;
+                } catch (IOException e) {
+                    // Includes the client timeout: the line ends, its engine is released and the connection dropped
+                    throw new UncheckedIOException(e);
+                }
+            }, (ply, result) -> {
+                try {
+                    EngineProtocol.send(out, EngineProtocol.RESULT,
+                            body -> EngineProtocol.writeResult(body, result, active.get() - 1));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | IllegalArgumentException e) {
+            // Only the engine side throws IOException here; connection failures are unchecked
+            sendError(out, e);
+        }
+    }
+
+    private static StockfishService.Lane lane(byte ordinal) {
+        StockfishService.Lane[] lanes = StockfishService.Lane.values();
+        if (ordinal < 0 || ordinal >= lanes.length) {
+            throw new IllegalArgumentException("Unknown lane " + ordinal);
+        }
+        return lanes[ordinal];
+    }
+
+    private static void checkLimit(StockfishService.SearchLimit limit) {
+        // Overlong movetimes are left to the backend's search timeout
+        if (limit.depth() < 0 || limit.depth() > MAX_DEPTH || limit.moveTimeMs() < 0
+                || limit.depth() == 0 && limit.moveTimeMs() == 0) {
+            throw new IllegalArgumentException("Bad search limit: depth " + limit.depth() + ", movetime "
+                    + limit.moveTimeMs() + " ms");
+        }
+    }
+
+    /** Everything the engine is sent or the cache is keyed by. */
+    private static void checkLine(String startFen, List<String> fens, List<String> uciMoves, int fromPly,
+            int toPly) {
+        if (fromPly < 0 || fromPly > toPly || toPly >= fens.size() || toPly > uciMoves.size()) {
+            throw new IllegalArgumentException("Bad ply range " + fromPly + ".." + toPly);
+        }
+        if (startFen != null) {
+            PositionValidator.checkFen(startFen);
+        }
+        PositionValidator.checkUciMoves(uciMoves);
+        for (int ply = fromPly; ply <= toPly; ply++) {
+            PositionValidator.checkFen(fens.get(ply));
+        }
+    }
+
+    private static void sendError(DataOutputStream out, Exception e) throws IOException {
+        log.warn("Search failed: {}", e.getMessage());
+        EngineProtocol.send(out, EngineProtocol.ERROR,
+                body -> EngineProtocol.writeString(body,
+                        Objects.requireNonNullElse(e.getMessage(), e.getClass().getSimpleName())));
+    }
+}
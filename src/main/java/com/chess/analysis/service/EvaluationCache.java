@@ -0,0 +1,191 @@
+package com.chess.analysis.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache of engine results shared by every caller of
+ * {@link StockfishService}.
+ * <p>
+ * Entries are keyed by the {@link ZobristKeys} of the normalized position
+ * (board, side to move, castling and en passant — the same key the opening
+ * book uses) and remember the depth they were searched at, so a result from
+ * depth N also answers any request for depth &lt;= N.
+ * <p>
+ * The table lives in a single {@link ByteBuffer} (direct, i.e. off-heap, by
+ * default) split into 4-way buckets of fixed 32-byte slots. When a bucket is
+ * full the least recently used slot is evicted. The best move and the first
+ * few plies of the principal variation are packed into 16 bits per move.
+ */
+@Service
+public class EvaluationCache {
+
+    /** Hit/miss/eviction counters plus current occupancy. */
+    public record Stats(long hits, long misses, long evictions, int size, int capacity) {
+    }
+
+    // Slot layout: key(8) | age(4) | evaluation(4) | depth(1) | moveCount(1) | moves(7 x 2)
+    private static final int SLOT_BYTES = 32;
+    private static final int WAYS = 4;
+    private static final int OFF_KEY = 0;
+    private static final int OFF_AGE = 8;
+    private static final int OFF_EVAL = 12;
+    private static final int OFF_DEPTH = 16;
+    private static final int OFF_MOVE_COUNT = 17;
+    private static final int OFF_MOVES = 18;
+    private static final int MAX_MOVES = 7;
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final ByteBuffer table;
+    private final int bucketMask;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicInteger clock = new AtomicInteger();
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public EvaluationCache(@Value("${chess.cache.entries:65536}") int entries,
+            @Value("${chess.cache.off-heap:true}") boolean offHeap) {
+        int buckets = Integer.highestOneBit(Math.max(1, entries / WAYS));
+        this.bucketMask = buckets - 1;
+        int bytes = buckets * WAYS * SLOT_BYTES;
+        this.table = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns a cached result searched at {@code depth} or deeper, or null on a
+     * miss.
+     */
+    public StockfishService.EvalResult get(String fen, int depth) {
+        long key = positionKey(fen);
+        int bucket = (int) key & bucketMask;
+        synchronized (locks[bucket & (LOCK_STRIPES - 1)]) {
+            int base = bucket * WAYS * SLOT_BYTES;
+            for (int way = 0; way < WAYS; way++) {
+                int slot = base + way * SLOT_BYTES;
+                if (table.getLong(slot + OFF_KEY) == key && table.get(slot + OFF_DEPTH) >= depth) {
+                    table.putInt(slot + OFF_AGE, clock.incrementAndGet());
+                    hits.increment();
+                    return readResult(slot);
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a result. An existing entry for the same position is only replaced
+     * by an equal or deeper search.
+     */
+    public void put(String fen, int depth, StockfishService.EvalResult result) {
+        long key = positionKey(fen);
+        int bucket = (int) key & bucketMask;
+        synchronized (locks[bucket & (LOCK_STRIPES - 1)]) {
+            int base = bucket * WAYS * SLOT_BYTES;
+            int victim = -1;
+            int victimAge = Integer.MAX_VALUE;
+            for (int way = 0; way < WAYS; way++) {
+                int slot = base + way * SLOT_BYTES;
+                long slotKey = table.getLong(slot + OFF_KEY);
+                if (slotKey == key) {
+                    if (table.get(slot + OFF_DEPTH) > depth) {
+                        return;
+                    }
+                    writeSlot(slot, key, depth, result);
+                    return;
+                }
+                if (slotKey == 0L) {
+                    if (victimAge != Integer.MIN_VALUE) {
+                        victim = slot;
+                        victimAge = Integer.MIN_VALUE;
+                    }
+                } else {
+                    int age = table.getInt(slot + OFF_AGE);
+                    if (age < victimAge) {
+                        victim = slot;
+                        victimAge = age;
+                    }
+                }
+            }
+            if (victimAge == Integer.MIN_VALUE) {
+                size.incrementAndGet();
+            } else {
+                evictions.increment();
+            }
+            writeSlot(victim, key, depth, result);
+        }
+    }
+
+    /** Drops every entry; the hit, miss and eviction counters are kept. */
+    public void clear() {
+        for (int bucket = 0; bucket <= bucketMask; bucket++) {
+            synchronized (locks[bucket & (LOCK_STRIPES - 1)]) {
+                int base = bucket * WAYS * SLOT_BYTES;
+                for (int way = 0; way < WAYS; way++) {
+                    int slot = base + way * SLOT_BYTES;
+                    if (table.getLong(slot + OFF_KEY) != 0L) {
+                        table.putLong(slot + OFF_KEY, 0L);
+                        size.decrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size.get(), (bucketMask + 1) * WAYS);
+    }
+
+    private void writeSlot(int slot, long key, int depth, StockfishService.EvalResult result) {
+        table.putLong(slot + OFF_KEY, key);
+        table.putInt(slot + OFF_AGE, clock.incrementAndGet());
+        table.putInt(slot + OFF_EVAL, result.evaluation());
+        table.put(slot + OFF_DEPTH, (byte) Math.min(depth, Byte.MAX_VALUE));
+        // moves[0] is the best move, followed by the rest of the principal variation
+        int count = 0;
+        short best = UciMoves.encode(result.bestMove());
+        if (best != 0) {
+            table.putShort(slot + OFF_MOVES, best);
+            count = 1;
+            List<String> pv = result.pv();
+            for (int i = 1; i < pv.size() && count < MAX_MOVES; i++) {
+                table.putShort(slot + OFF_MOVES + 2 * count++, UciMoves.encode(pv.get(i)));
+            }
+        }
+        table.put(slot + OFF_MOVE_COUNT, (byte) count);
+    }
+
+    private StockfishService.EvalResult readResult(int slot) {
+        int evaluation = table.getInt(slot + OFF_EVAL);
+        int count = table.get(slot + OFF_MOVE_COUNT);
+        if (count == 0) {
+            return new StockfishService.EvalResult(evaluation, null);
+        }
+        String[] moves = new String[count];
+        for (int i = 0; i < count; i++) {
+            moves[i] = UciMoves.decode(table.getShort(slot + OFF_MOVES + 2 * i));
+        }
+        return new StockfishService.EvalResult(evaluation, moves[0], List.of(moves));
+    }
+
+    /**
+     * Zobrist key of the first four FEN fields (placement, side, castling, en
+     * passant). Zero is reserved for empty slots.
+     */
+    static long positionKey(String fen) {
+        long key = ZobristKeys.ofFen(fen);
+        return key != 0L ? key : 1L;
+    }
+}
@@ -0,0 +1,172 @@
+package com.chess.analysis.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns the Lichess {@code openings/*.tsv} files into the binary artifacts
+ * loaded by {@link OpeningBookService}:
+ * <ul>
+ * <li>{@code book.bin} — a sorted, de-duplicated array of the
+ * {@link ZobristKeys} of every position reached along every opening line.
+ * Format (big-endian): magic "BOOK", version, key count, then the keys.</li>
+ * <li>{@code eco.bin} — every line's ECO code, name, packed UCI moves and
+ * final position key, used to build the {@link OpeningTrie}. Format: magic
+ * "ECO1", version, line count, then per line eco, name (modified UTF-8), key,
+ * move count and moves.</li>
+ * </ul>
+ * Runs at build time through the {@code compileOpeningBook} Gradle task:
+ * {@code OpeningBookCompiler <outputDir> <a.tsv> <b.tsv> ...}.
+ */
+public final class OpeningBookCompiler {
+
+    static final int MAGIC = 0x424F4F4B; // "BOOK"
+    static final int ECO_MAGIC = 0x45434F31; // "ECO1"
+    static final int VERSION = 1;
+
+    /** One named line from the TSVs, replayed into packed moves. */
+    record OpeningLine(String eco, String name, short[] moves, long positionKey) {
+    }
+
+    /** Everything the book needs, compiled in one pass over the TSVs. */
+    record Compiled(long[] bookKeys, List<OpeningLine> lines) {
+    }
+
+    private OpeningBookCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: OpeningBookCompiler <outputDir> <openings.tsv>...");
+            System.exit(2);
+        }
+        Path outputDir = Path.of(args[0]);
+        Reader[] sources = new Reader[args.length - 1];
+        for (int i = 1; i < args.length; i++) {
+            sources[i - 1] = Files.newBufferedReader(Path.of(args[i]));
+        }
+        Compiled compiled = compile(List.of(sources));
+
+        Files.createDirectories(outputDir);
+        try (OutputStream out = Files.newOutputStream(outputDir.resolve("book.bin"))) {
+            write(compiled.bookKeys(), out);
+        }
+        try (OutputStream out = Files.newOutputStream(outputDir.resolve("eco.bin"))) {
+            writeLines(compiled.lines(), out);
+        }
+        System.out.println("Wrote " + compiled.bookKeys().length + " book positions and "
+                + compiled.lines().size() + " named lines to " + outputDir);
+    }
+
+    /** Replays every TSV line (eco, name, pgn) into position keys and named lines. */
+    static Compiled compile(List<Reader> tsvSources) throws IOException {
+        long[] keys = new long[1 << 16];
+        int count = 0;
+        List<OpeningLine> lines = new ArrayList<>();
+        for (Reader source : tsvSources) {
+            try (BufferedReader reader = new BufferedReader(source)) {
+                String line = reader.readLine(); // skip header
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    if (parts.length < 3) {
+                        continue;
+                    }
+                    PgnParser.ParsedGame game = PgnParser.parse(parts[2].trim());
+                    List<String> fens = game.fens();
+                    if (count + fens.size() > keys.length) {
+                        keys = Arrays.copyOf(keys, Math.max(keys.length * 2, count + fens.size()));
+                    }
+                    for (String fen : fens) {
+                        keys[count++] = ZobristKeys.ofFen(fen);
+                    }
+
+                    short[] moves = new short[game.plies()];
+                    for (int i = 0; i < moves.length; i++) {
+                        moves[i] = UciMoves.encode(game.uciMoves().get(i));
+                    }
+                    lines.add(new OpeningLine(parts[0].trim(), parts[1].trim(), moves,
+                            keys[count - 1]));
+                }
+            }
+        }
+
+        Arrays.sort(keys, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || keys[i] != keys[unique - 1]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return new Compiled(Arrays.copyOf(keys, unique), lines);
+    }
+
+    static void write(long[] keys, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(keys.length);
+        for (long key : keys) {
+            data.writeLong(key);
+        }
+        data.flush();
+    }
+
+    static long[] read(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes());
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not an opening book index (or built by another version)");
+        }
+        long[] keys = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(keys);
+        return keys;
+    }
+
+    static void writeLines(List<OpeningLine> lines, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(ECO_MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(lines.size());
+        for (OpeningLine line : lines) {
+            data.writeUTF(line.eco());
+            data.writeUTF(line.name());
+            data.writeLong(line.positionKey());
+            data.writeShort(line.moves().length);
+            for (short move : line.moves()) {
+                data.writeShort(move);
+            }
+        }
+        data.flush();
+    }
+
+    static List<OpeningLine> readLines(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != ECO_MAGIC || data.readInt() != VERSION) {
+            throw new IOException("Not an opening name index (or built by another version)");
+        }
+        int count = data.readInt();
+        List<OpeningLine> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String eco = data.readUTF();
+            String name = data.readUTF();
+            long positionKey = data.readLong();
+            short[] moves = new short[data.readShort()];
+            for (int m = 0; m < moves.length; m++) {
+                moves[m] = data.readShort();
+            }
+            lines.add(new OpeningLine(eco, name, moves, positionKey));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,189 @@
+package com.chess.analysis.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scores every position of the opening book with the engine, ahead of time,
+ * so {@link OpeningBookService} can answer the book plies of a game without a
+ * search. Output format of {@code book-evals.bin} (big-endian): magic "BEV1",
+ * version, search depth, position count, the sorted {@link ZobristKeys} of
+ * the positions, then one score per key (centipawns from White's point of
+ * view, mates as 10000 minus the distance, as in {@link UciParser}).
+ * <p>
+ * This needs a real engine and takes a while, so unlike
+ * {@link OpeningBookCompiler} it is not part of the build: run the
+ * {@code evaluateOpeningBook} Gradle task after changing the TSVs and commit
+ * the table. {@code OpeningBookEvaluator <output> <depth> <a.tsv> <b.tsv> ...},
+ * with the engine taken from {@code STOCKFISH_PATH}.
+ */
+public final class OpeningBookEvaluator {
+
+    static final int MAGIC = 0x42455631; // "BEV1"
+    static final int VERSION = 1;
+
+    /** Engine scores of book positions, sorted by key for binary search. */
+    record Table(int depth, long[] keys, short[] evaluations) {
+
+        static final Table EMPTY = new Table(0, new long[0], new short[0]);
+
+        /** White-relative score of the position, or null when it is not in the table. */
+        StockfishService.EvalResult lookup(String fen) {
+            int i = Arrays.binarySearch(keys, ZobristKeys.ofFen(fen));
+            return i >= 0 ? new StockfishService.EvalResult(evaluations[i], null) : null;
+        }
+
+        int size() {
+            return keys.length;
+        }
+    }
+
+    private OpeningBookEvaluator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: OpeningBookEvaluator <output.bin> <depth> <openings.tsv>...");
+            System.exit(2);
+        }
+        Path output = Path.of(args[0]);
+        int depth = Integer.parseInt(args[1]);
+        List<Reader> sources = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            sources.add(Files.newBufferedReader(Path.of(args[i])));
+        }
+        Map<Long, String> positions = positions(sources);
+
+        // Every core searches; nothing is interactive here
+        StockfishService stockfish = new StockfishService(new EvaluationCache(1 << 16, false),
+                new SimpleMeterRegistry(), EngineProperties.defaults().withInteractiveReserved(0)
+                        .withTimeouts(Duration.ofMinutes(5), Duration.ofMinutes(5)));
+        stockfish.initPool();
+        long start = System.nanoTime();
+        Table table;
+        try {
+            table = evaluate(stockfish, positions, depth);
+        } finally {
+            stockfish.destroyPool();
+        }
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (OutputStream out = Files.newOutputStream(output)) {
+            write(table, out);
+        }
+        System.out.printf("Wrote %d book positions at depth %d to %s in %d s%n", table.size(), depth, output,
+                (System.nanoTime() - start) / 1_000_000_000L);
+    }
+
+    /** Every distinct position along every TSV line, keyed as the book index keys it. */
+    static Map<Long, String> positions(List<Reader> tsvSources) throws IOException {
+        Map<Long, String> positions = new LinkedHashMap<>();
+        for (Reader source : tsvSources) {
+            try (BufferedReader reader = new BufferedReader(source)) {
+                String line = reader.readLine(); // skip header
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    if (parts.length < 3) {
+                        continue;
+                    }
+                    for (String fen : PgnParser.parse(parts[2].trim()).fens()) {
+                        positions.putIfAbsent(ZobristKeys.ofFen(fen), fen);
+                    }
+                }
+            }
+        }
+        return positions;
+    }
+
+    private static Table evaluate(StockfishService stockfish, Map<Long, String> positions, int depth)
+            throws Exception {
+        StockfishService.SearchLimit limit = StockfishService.SearchLimit.toDepth(depth);
+        AtomicInteger done = new AtomicInteger();
+        List<Map.Entry<Long, String>> entries = new ArrayList<>(positions.entrySet());
+        List<Future<StockfishService.EvalResult>> results = new ArrayList<>(entries.size());
+        // The engine pool bounds the searches; each waiting position just needs a cheap thread
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Map.Entry<Long, String> entry : entries) {
+                String fen = entry.getValue();
+                results.add(executor.submit(() -> {
+                    StockfishService.EvalResult raw = stockfish.evaluateWithBestMove(fen, limit,
+                            StockfishService.Lane.BATCH);
+                    int n = done.incrementAndGet();
+                    if (n % 500 == 0) {
+                        System.out.printf("%d / %d positions%n", n, entries.size());
+                    }
+                    return raw;
+                }));
+            }
+        }
+
+        long[] keys = new long[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).getKey();
+        }
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        long[] sortedKeys = new long[keys.length];
+        short[] evaluations = new short[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            int entry = order[i];
+            String fen = entries.get(entry).getValue();
+            int raw = results.get(entry).get().evaluation();
+            sortedKeys[i] = keys[entry];
+            evaluations[i] = (short) (fen.contains(" w ") ? raw : -raw);
+        }
+        return new Table(depth, sortedKeys, evaluations);
+    }
+
+    static void write(Table table, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(table.depth());
+        data.writeInt(table.size());
+        for (long key : table.keys()) {
+            data.writeLong(key);
+        }
+        for (short evaluation : table.evaluations()) {
+            data.writeShort(evaluation);
+        }
+        data.flush();
+    }
+
+    static Table read(InputStream in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(in.readAllBytes());
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a book evaluation table (or built by another version)");
+        }
+        int depth = buffer.getInt();
+        long[] keys = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(keys);
+        buffer.position(buffer.position() + keys.length * Long.BYTES);
+        short[] evaluations = new short[keys.length];
+        buffer.asShortBuffer().get(evaluations);
+        return new Table(depth, keys, evaluations);
+    }
+}
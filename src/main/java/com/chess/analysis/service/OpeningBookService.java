@@ -1,9 +1,6 @@
 package com.chess.analysis.service;
 
-import com.github.bhlangonijr.chesslib.Board;
-import com.github.bhlangonijr.chesslib.game.Game;
-import com.github.bhlangonijr.chesslib.move.Move;
-import com.github.bhlangonijr.chesslib.pgn.PgnHolder;
+import com.chess.analysis.model.Opening;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,92 +8,120 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
-import java.io.File;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 
 @Service
 public class OpeningBookService {
 
     private static final Logger log = LoggerFactory.getLogger(OpeningBookService.class);
-    // HashSet to store normalized FENs (position + active color + castling + en
-    // passant target)
-    private final Set<String> bookPositions = new HashSet<>();
+    private static final String BOOK_INDEX = "/openings/book.bin";
+    private static final String ECO_INDEX = "/openings/eco.bin";
+    private static final String BOOK_EVALS = "/openings/book-evals.bin";
+
+    // Sorted Zobrist keys (position + active color + castling + en passant) of
+    // every theory position, precompiled at build time by OpeningBookCompiler
+    private long[] bookPositions = new long[0];
+
+    // Named lines (ECO code + name) keyed by move sequence, for classification
+    private OpeningTrie openings = new OpeningTrie(List.of());
+
+    // Engine scores of the theory positions, generated offline by OpeningBookEvaluator
+    private OpeningBookEvaluator.Table evaluations = OpeningBookEvaluator.Table.EMPTY;
+
+    // Fingerprint of everything above, for keys of results that depend on it
+    private String version = "";
 
     @PostConstruct
     public void loadOpeningBook() {
+        loadEvaluations();
+        loadIndex();
+        version = Integer.toHexString(Objects.hash(Arrays.hashCode(bookPositions), openings.size(),
+                evaluations.depth(), Arrays.hashCode(evaluations.keys()), Arrays.hashCode(evaluations.evaluations())));
+    }
+
+    private void loadIndex() {
+        try (InputStream book = OpeningBookService.class.getResourceAsStream(BOOK_INDEX);
+                InputStream eco = OpeningBookService.class.getResourceAsStream(ECO_INDEX)) {
+            if (book != null && eco != null) {
+                bookPositions = OpeningBookCompiler.read(book);
+                openings = new OpeningTrie(OpeningBookCompiler.readLines(eco));
+                log.info("Loaded {} theoretical board positions and {} named lines from the precompiled book index.",
+                        bookPositions.length, openings.size());
+                return;
+            }
+        } catch (Exception e) {
+            log.error("Failed to read the precompiled opening book: {}", e.getMessage());
+        }
+
+        // Running without the Gradle-built index (e.g. straight from an IDE):
+        // compile it from the TSV sources instead, which is much slower.
         try {
-            log.info("Starting Lichess Opening Book Initialization...");
+            log.warn("{} not on the classpath; compiling the opening book from TSV files.", BOOK_INDEX);
             PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
             Resource[] resources = resolver.getResources("classpath:openings/*.tsv");
-
-            StringBuilder multiGamePgn = new StringBuilder();
-
-            log.info("Found {} TSV opening databases.", resources.length);
+            List<Reader> sources = new ArrayList<>();
             for (Resource resource : resources) {
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
-                    String line;
-                    boolean isFirstLine = true;
-                    while ((line = reader.readLine()) != null) {
-                        if (isFirstLine) {
-                            isFirstLine = false; // skip header
-                            continue;
-                        }
-                        String[] parts = line.split("\t");
-                        if (parts.length >= 3) {
-                            String pgnSequence = parts[2].trim();
-                            // Wrap the sequence into a standard PGN game text block for PgnHolder
-                            multiGamePgn.append("[Event \"?\"]\n\n").append(pgnSequence).append(" *\n\n");
-                        }
-                    }
-                }
+                sources.add(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8));
             }
+            OpeningBookCompiler.Compiled compiled = OpeningBookCompiler.compile(sources);
+            bookPositions = compiled.bookKeys();
+            openings = new OpeningTrie(compiled.lines());
+            log.info("Loaded {} unique theoretical board positions and {} named lines into the Book.",
+                    bookPositions.length, openings.size());
+        } catch (Exception e) {
+            log.error("Failed to load Lichess ECO TSV files: {}", e.getMessage());
+        }
+    }
 
-            // Write the mega-PGN into a temp file to utilize the fast C-like PgnHolder
-            // library
-            File tempPgnDb = File.createTempFile("eco_database", ".pgn");
-            Files.writeString(tempPgnDb.toPath(), multiGamePgn.toString());
-
-            PgnHolder holder = new PgnHolder(tempPgnDb.getAbsolutePath());
-            holder.loadPgn();
-
-            for (Game game : holder.getGames()) {
-                Board board = new Board(); // Start at standard position
-                // Store starting position as theory
-                bookPositions.add(normalizeFen(board.getFen()));
-                // Play out each theory sequence and store every resulting position
-                for (Move move : game.getHalfMoves()) {
-                    board.doMove(move);
-                    bookPositions.add(normalizeFen(board.getFen()));
-                }
+    private void loadEvaluations() {
+        try (InputStream in = OpeningBookService.class.getResourceAsStream(BOOK_EVALS)) {
+            if (in == null) {
+                log.info("No {} on the classpath; book positions will be searched like any other.", BOOK_EVALS);
+                return;
             }
-
-            tempPgnDb.delete();
-            log.info("Loaded {} unique theoretical board positions into the Book.", bookPositions.size());
+            evaluations = OpeningBookEvaluator.read(in);
+            log.info("Loaded engine scores (depth {}) for {} book positions.", evaluations.depth(),
+                    evaluations.size());
         } catch (Exception e) {
-            log.error("Failed to load Lichess ECO TSV files: {}", e.getMessage());
+            log.error("Failed to read the book evaluation table: {}", e.getMessage());
         }
     }
 
+    /**
+     * Changes whenever the loaded book index, named lines or score table do;
+     * analyses are keyed by it, since book plies are classified and scored
+     * from them.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /** Allocation-free lookup: hashes the FEN in place and binary-searches the index. */
     public boolean isBookPosition(String fen) {
-        return bookPositions.contains(normalizeFen(fen));
+        return Arrays.binarySearch(bookPositions, ZobristKeys.ofFen(fen)) >= 0;
     }
 
     /**
-     * Standardizes a FEN so identical positions with different half-move clocks
-     * math natively.
-     * We retain Position, Active Color, Castling, and En Passant rights.
+     * Names the deepest opening line the game follows (or transposes into).
+     * {@code fens} starts with the initial position, one entry per move after
+     * it. Returns null when not even the first move is in a named line.
      */
-    private String normalizeFen(String fullFen) {
-        String[] parts = fullFen.split(" ");
-        if (parts.length >= 4) {
-            return String.join(" ", parts[0], parts[1], parts[2], parts[3]);
-        }
-        return fullFen;
+    public Opening classify(List<String> uciMoves, List<String> fens) {
+        return openings.classify(uciMoves, fens);
+    }
+
+    /**
+     * The precomputed engine score of a book position (White's point of view,
+     * without a best move), or null when the table does not have it.
+     */
+    public StockfishService.EvalResult bookEvaluation(String fen) {
+        return evaluations.lookup(fen);
     }
 }
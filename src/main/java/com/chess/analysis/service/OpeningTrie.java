@@ -0,0 +1,140 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.Opening;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Move-sequence trie over the named opening lines, with a fallback table from
+ * final-position Zobrist key to line for games that transpose into a named
+ * position by a different move order.
+ * <p>
+ * Nodes are plain ints. Edges live in one open-addressing table keyed by
+ * {@code parent << 16 | packedMove}, so the whole structure is a handful of
+ * primitive arrays and a lookup walks at most one probe chain per ply.
+ */
+final class OpeningTrie {
+
+    private static final int ROOT = 0;
+    private static final long START_POSITION =
+            ZobristKeys.ofFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+
+    private final String[] ecos;
+    private final String[] names;
+    private final int[] nodeLine; // line index ending at each node, -1 if none
+    private final LongIntTable edges;
+    private final LongIntTable positions;
+
+    OpeningTrie(List<OpeningBookCompiler.OpeningLine> lines) {
+        int totalMoves = lines.stream().mapToInt(line -> line.moves().length).sum();
+        ecos = new String[lines.size()];
+        names = new String[lines.size()];
+        int[] lineAtNode = new int[totalMoves + 1];
+        Arrays.fill(lineAtNode, -1);
+        edges = new LongIntTable(totalMoves);
+        positions = new LongIntTable(lines.size());
+
+        int nodes = 1;
+        for (int i = 0; i < lines.size(); i++) {
+            OpeningBookCompiler.OpeningLine line = lines.get(i);
+            ecos[i] = line.eco();
+            names[i] = line.name();
+
+            int node = ROOT;
+            for (short move : line.moves()) {
+                long edge = edgeKey(node, move);
+                int child = edges.get(edge);
+                if (child < 0) {
+                    child = nodes++;
+                    edges.put(edge, child);
+                }
+                node = child;
+            }
+            // First line wins when the TSVs name the same sequence or position twice
+            if (lineAtNode[node] < 0) {
+                lineAtNode[node] = i;
+            }
+            if (positions.get(line.positionKey()) < 0) {
+                positions.put(line.positionKey(), i);
+            }
+        }
+        nodeLine = Arrays.copyOf(lineAtNode, nodes);
+    }
+
+    /**
+     * Returns the deepest named opening the game reaches, following its moves
+     * through the trie and checking every position against the transposition
+     * table. {@code fens.get(ply)} is the position after {@code ply} moves;
+     * games set up from a custom FEN are matched by position only.
+     */
+    Opening classify(List<String> uciMoves, List<String> fens) {
+        int bestLine = -1;
+        int bestPly = 0;
+
+        int node = !fens.isEmpty() && ZobristKeys.ofFen(fens.get(0)) == START_POSITION ? ROOT : -1;
+        for (int ply = 1; ply <= uciMoves.size(); ply++) {
+            if (node >= 0) {
+                node = edges.get(edgeKey(node, UciMoves.encode(uciMoves.get(ply - 1))));
+            }
+            int line = node >= 0 ? nodeLine[node] : -1;
+            if (line < 0 && ply < fens.size()) {
+                line = positions.get(ZobristKeys.ofFen(fens.get(ply)));
+            }
+            if (line >= 0) {
+                bestLine = line;
+                bestPly = ply;
+            }
+        }
+        return bestLine >= 0 ? new Opening(ecos[bestLine], names[bestLine], bestPly) : null;
+    }
+
+    int size() {
+        return ecos.length;
+    }
+
+    private static long edgeKey(int node, short move) {
+        return (long) node << 16 | (move & 0xffff);
+    }
+
+    /** Minimal open-addressing long -> int map; -1 means absent. */
+    private static final class LongIntTable {
+
+        private final long[] keys;
+        private final int[] values;
+        private final boolean[] used;
+        private final int mask;
+
+        LongIntTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            used = new boolean[capacity];
+            mask = capacity - 1;
+        }
+
+        int get(long key) {
+            for (int i = mix(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            int i = mix(key) & mask;
+            while (used[i] && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private static int mix(long key) {
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ key >>> 32);
+        }
+    }
+}
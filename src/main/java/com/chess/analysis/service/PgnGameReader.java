@@ -0,0 +1,58 @@
+package com.chess.analysis.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a multi-game PGN stream into one PGN text per game without reading
+ * the whole input. A game ends where the next tag section ({@code [Tag "..."]})
+ * starts after movetext has been seen; brackets inside {@code {...}} comments
+ * (e.g. {@code [%clk 0:05:00]}) don't count.
+ */
+public class PgnGameReader implements AutoCloseable {
+
+    private final BufferedReader reader;
+    private String pendingLine;
+
+    public PgnGameReader(Reader source) {
+        this.reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source);
+    }
+
+    /** Returns the next game's PGN text, or null at end of input. */
+    public String nextGame() throws IOException {
+        StringBuilder game = new StringBuilder();
+        boolean seenMoves = false;
+        int commentDepth = 0;
+
+        String line;
+        while ((line = pendingLine != null ? pendingLine : reader.readLine()) != null) {
+            pendingLine = null;
+            String trimmed = line.strip();
+            if (commentDepth == 0 && trimmed.startsWith("[")) {
+                if (seenMoves) {
+                    pendingLine = line; // first tag of the next game
+                    break;
+                }
+            } else if (!trimmed.isEmpty()) {
+                seenMoves = true;
+                for (int i = 0; i < trimmed.length(); i++) {
+                    char c = trimmed.charAt(i);
+                    if (c == '{') {
+                        commentDepth++;
+                    } else if (c == '}' && commentDepth > 0) {
+                        commentDepth--;
+                    }
+                }
+            }
+            game.append(line).append('\n');
+        }
+
+        return seenMoves ? game.toString() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,347 @@
+package com.chess.analysis.service;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.PieceType;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.move.Move;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-pass PGN parser working directly on the request text: no temp files
+ * and no regex scans. While tokenizing it collects the tag pairs, resolves each
+ * SAN move against the legal moves of a live {@link Board}, records the FEN,
+ * side to move and material swing of every ply and picks up
+ * {@code [%clk ...]} comments.
+ * <p>
+ * Only the first game of the input is read; variations, NAGs ({@code $1}),
+ * annotation glyphs ({@code !?}, {@code +-}, {@code N} for a novelty) and
+ * other comments are skipped.
+ */
+public final class PgnParser {
+
+    /**
+     * A replayed game. {@code fens} has one more entry than {@code uciMoves}
+     * (the start position first); {@code whiteToMove} and {@code clockTimes}
+     * are per move, with null clocks where the PGN has none.
+     * {@code materialSwings} is, per move, the material the mover ends up with
+     * (in pawns) once the opponent has won back what it can by
+     * {@link StaticExchange exchanges}: below zero the move gave material away.
+     */
+    public record ParsedGame(Map<String, String> headers, String startFen, List<String> uciMoves,
+            List<String> fens, List<Boolean> whiteToMove, List<String> clockTimes, List<Integer> materialSwings) {
+
+        public String header(String name, String fallback) {
+            String value = headers.get(name);
+            return value != null && !value.isBlank() ? value : fallback;
+        }
+
+        public int plies() {
+            return uciMoves.size();
+        }
+    }
+
+    private PgnParser() {
+    }
+
+    public static ParsedGame parse(String pgn) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        List<String> uciMoves = new ArrayList<>();
+        List<String> fens = new ArrayList<>();
+        List<Boolean> whiteToMove = new ArrayList<>();
+        List<String> clockTimes = new ArrayList<>();
+        List<Integer> materialSwings = new ArrayList<>();
+        Board board = null; // created at the first movetext token, once a [FEN] tag would have been seen
+        String startFen = null;
+
+        int i = 0;
+        int n = pgn.length();
+        while (i < n) {
+            char c = pgn.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '[') {
+                if (board != null) {
+                    break; // tag section of a following game
+                }
+                i = readTag(pgn, i, headers);
+            } else if (c == '{') {
+                int close = pgn.indexOf('}', i);
+                int end = close >= 0 ? close : n;
+                if (!clockTimes.isEmpty()) {
+                    String clock = readClock(pgn, i + 1, end);
+                    if (clock != null) {
+                        clockTimes.set(clockTimes.size() - 1, clock);
+                    }
+                }
+                i = end + 1;
+            } else if (c == ';') {
+                int eol = pgn.indexOf('\n', i);
+                i = eol >= 0 ? eol + 1 : n;
+            } else if (c == '(') {
+                i = skipVariation(pgn, i);
+            } else if (c == '$') {
+                i++;
+                while (i < n && Character.isDigit(pgn.charAt(i))) {
+                    i++;
+                }
+            } else {
+                int start = i;
+                // '$' ends the token too: "e4$1" is a move and a NAG
+                while (i < n && !Character.isWhitespace(pgn.charAt(i)) && "{}();[$".indexOf(pgn.charAt(i)) < 0) {
+                    i++;
+                }
+                String token = pgn.substring(start, i);
+                if (isResult(token)) {
+                    break;
+                }
+                String san = stripMoveNumber(token);
+                if (san.isEmpty() || isGlyph(san)) {
+                    continue;
+                }
+                if (board == null) {
+                    board = new Board();
+                    startFen = headers.get("FEN");
+                    if (startFen != null) {
+                        board.loadFromFen(startFen);
+                    }
+                    fens.add(board.getFen());
+                }
+                Move move = resolveSan(board, san, uciMoves.size() + 1);
+                whiteToMove.add(board.getSideToMove() == Side.WHITE);
+                uciMoves.add(move.toString());
+                int gained = StaticExchange.captureGain(board, move);
+                board.doMove(move);
+                fens.add(board.getFen());
+                clockTimes.add(null);
+                materialSwings.add(gained - StaticExchange.threat(board));
+            }
+        }
+
+        if (board == null) {
+            board = new Board();
+            startFen = headers.get("FEN");
+            if (startFen != null) {
+                board.loadFromFen(startFen);
+            }
+            fens.add(board.getFen());
+        }
+        return new ParsedGame(headers, startFen, uciMoves, fens, whiteToMove, clockTimes, materialSwings);
+    }
+
+    /** Parses {@code [Name "Value"]} starting at {@code i}; returns the index after {@code ]}. */
+    private static int readTag(String pgn, int i, Map<String, String> headers) {
+        int n = pgn.length();
+        i++;
+        while (i < n && Character.isWhitespace(pgn.charAt(i))) {
+            i++;
+        }
+        int nameStart = i;
+        while (i < n && !Character.isWhitespace(pgn.charAt(i)) && pgn.charAt(i) != '"' && pgn.charAt(i) != ']') {
+            i++;
+        }
+        String name = pgn.substring(nameStart, i);
+        while (i < n && pgn.charAt(i) != '"' && pgn.charAt(i) != ']') {
+            i++;
+        }
+        StringBuilder value = new StringBuilder();
+        if (i < n && pgn.charAt(i) == '"') {
+            i++;
+            while (i < n && pgn.charAt(i) != '"') {
+                char c = pgn.charAt(i++);
+                if (c == '\\' && i < n) {
+                    c = pgn.charAt(i++);
+                }
+                value.append(c);
+            }
+        }
+        while (i < n && pgn.charAt(i) != ']') {
+            i++;
+        }
+        if (!name.isEmpty()) {
+            headers.put(name, value.toString());
+        }
+        return i + 1;
+    }
+
+    /**
+     * Extracts the {@code [%clk h:mm:ss]} value from a comment body, dropping a
+     * leading "0:" or "00:" hour field (e.g. "0:05:00" becomes "05:00").
+     */
+    private static String readClock(String pgn, int from, int to) {
+        int tag = pgn.indexOf("[%clk", from);
+        if (tag < 0 || tag >= to) {
+            return null;
+        }
+        int i = tag + 5;
+        while (i < to && Character.isWhitespace(pgn.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        while (i < to && (Character.isDigit(pgn.charAt(i)) || pgn.charAt(i) == ':' || pgn.charAt(i) == '.')) {
+            i++;
+        }
+        if (i == start) {
+            return null;
+        }
+        String raw = pgn.substring(start, i);
+        if (raw.startsWith("0:")) {
+            raw = raw.substring(2);
+        } else if (raw.startsWith("00:")) {
+            raw = raw.substring(3);
+        }
+        return raw;
+    }
+
+    /** Skips a (possibly nested) {@code (...)} variation, including comments inside it. */
+    private static int skipVariation(String pgn, int i) {
+        int n = pgn.length();
+        int depth = 0;
+        while (i < n) {
+            char c = pgn.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            } else if (c == '{') {
+                int close = pgn.indexOf('}', i);
+                i = close >= 0 ? close : n;
+            } else if (c == ';') {
+                int eol = pgn.indexOf('\n', i);
+                i = eol >= 0 ? eol : n;
+            }
+            i++;
+        }
+        return n;
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    /**
+     * Annotation glyphs written on their own, such as "!", "?!", "+-", "=",
+     * "±" or "N" (novelty): no letter or digit, or the novelty sign.
+     */
+    private static boolean isGlyph(String token) {
+        return token.equals("N") || token.chars().noneMatch(c -> c < 128 && Character.isLetterOrDigit(c));
+    }
+
+    /** Drops a leading move number ("12.", "12...", or glued as in "12.e4"). */
+    private static String stripMoveNumber(String token) {
+        int i = 0;
+        while (i < token.length() && Character.isDigit(token.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == token.length() || token.charAt(i) != '.') {
+            return token; // not a move number, e.g. "e4" or "0-0"
+        }
+        while (i < token.length() && token.charAt(i) == '.') {
+            i++;
+        }
+        return token.substring(i);
+    }
+
+    /** Finds the legal move described by a SAN token such as "Nbxd7+", "e8=Q" or "O-O-O". */
+    static Move resolveSan(Board board, String token, int ply) {
+        int end = token.length();
+        while (end > 0 && "+#!?".indexOf(token.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        String san = token.substring(0, end);
+        List<Move> legalMoves = board.legalMoves();
+
+        if (san.equals("O-O") || san.equals("0-0") || san.equals("O-O-O") || san.equals("0-0-0")) {
+            int fileDelta = san.length() == 3 ? 2 : -2;
+            for (Move move : legalMoves) {
+                if (board.getPiece(move.getFrom()).getPieceType() == PieceType.KING
+                        && move.getTo().ordinal() - move.getFrom().ordinal() == fileDelta) {
+                    return move;
+                }
+            }
+            throw illegal(token, ply);
+        }
+
+        PieceType promotion = null;
+        int eq = san.indexOf('=');
+        if (eq >= 0 && eq + 1 < san.length()) {
+            promotion = pieceType(san.charAt(eq + 1));
+            san = san.substring(0, eq);
+        } else if (san.length() > 2 && pieceType(san.charAt(san.length() - 1)) != null
+                && Character.isDigit(san.charAt(san.length() - 2))) {
+            promotion = pieceType(san.charAt(san.length() - 1)); // "e8Q"
+            san = san.substring(0, san.length() - 1);
+        }
+
+        PieceType moving = PieceType.PAWN;
+        int start = 0;
+        if (!san.isEmpty() && pieceType(san.charAt(0)) != null) {
+            moving = pieceType(san.charAt(0));
+            start = 1;
+        }
+        if (san.length() - start < 2) {
+            throw illegal(token, ply);
+        }
+        int toFile = san.charAt(san.length() - 2) - 'a';
+        int toRank = san.charAt(san.length() - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7) {
+            throw illegal(token, ply);
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        for (int k = start; k < san.length() - 2; k++) {
+            char c = san.charAt(k);
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            }
+        }
+
+        int to = toRank * 8 + toFile;
+        Move found = null;
+        for (Move move : legalMoves) {
+            int from = move.getFrom().ordinal();
+            if (move.getTo().ordinal() != to
+                    || board.getPiece(move.getFrom()).getPieceType() != moving
+                    || (fromFile >= 0 && from % 8 != fromFile)
+                    || (fromRank >= 0 && from / 8 != fromRank)) {
+                continue;
+            }
+            Piece promoted = move.getPromotion();
+            PieceType promotedType = promoted == null || promoted == Piece.NONE ? null : promoted.getPieceType();
+            if (promotedType != promotion) {
+                continue;
+            }
+            if (found != null) {
+                throw new IllegalArgumentException("Ambiguous move '" + token + "' at ply " + ply);
+            }
+            found = move;
+        }
+        if (found == null) {
+            throw illegal(token, ply);
+        }
+        return found;
+    }
+
+    private static PieceType pieceType(char c) {
+        return switch (c) {
+            case 'N' -> PieceType.KNIGHT;
+            case 'B' -> PieceType.BISHOP;
+            case 'R' -> PieceType.ROOK;
+            case 'Q' -> PieceType.QUEEN;
+            case 'K' -> PieceType.KING;
+            default -> null;
+        };
+    }
+
+    private static IllegalArgumentException illegal(String token, int ply) {
+        return new IllegalArgumentException("Illegal move '" + token + "' at ply " + ply);
+    }
+}
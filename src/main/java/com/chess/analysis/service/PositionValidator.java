@@ -0,0 +1,123 @@
+package com.chess.analysis.service;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Checks positions and moves that come from outside (request bodies, the
+ * live socket, remote clients of an {@link EngineWorker}) before they are
+ * written into a UCI {@code position} command. A FEN with a line break would
+ * otherwise smuggle extra commands to the engine, and a malformed or illegal
+ * position (no king, the side not to move in check) can crash Stockfish.
+ * Problems are reported as {@link IllegalArgumentException}s whose message
+ * can be shown to the client.
+ */
+public final class PositionValidator {
+
+    private static final int MAX_FEN_LENGTH = 100;
+    private static final Pattern SIDE = Pattern.compile("[wb]");
+    private static final Pattern CASTLING = Pattern.compile("-|K?Q?k?q?");
+    private static final Pattern EN_PASSANT = Pattern.compile("-|[a-h][36]");
+    private static final Pattern COUNTER = Pattern.compile("\\d{1,4}");
+    private static final Pattern UCI_MOVE = Pattern.compile("[a-h][1-8][a-h][1-8][nbrq]?");
+
+    private PositionValidator() {
+    }
+
+    /**
+     * Returns {@code fen} with surrounding whitespace removed, or throws if it
+     * is not a legal position in plain FEN (placement, side to move, castling,
+     * en passant and optionally the two move counters).
+     */
+    public static String checkFen(String fen) {
+        if (fen == null || fen.isBlank()) {
+            throw new IllegalArgumentException("No FEN given");
+        }
+        fen = fen.strip();
+        if (fen.length() > MAX_FEN_LENGTH) {
+            throw new IllegalArgumentException("FEN is too long");
+        }
+        for (int i = 0; i < fen.length(); i++) {
+            char c = fen.charAt(i);
+            if (c < ' ' || c > '~') {
+                throw new IllegalArgumentException("FEN contains control or non-ASCII characters");
+            }
+        }
+        String[] fields = fen.split(" ");
+        if (fields.length < 4 || fields.length > 6) {
+            throw new IllegalArgumentException("FEN needs 4 to 6 space-separated fields");
+        }
+        checkPlacement(fields[0]);
+        if (!SIDE.matcher(fields[1]).matches() || fields[2].isEmpty() || !CASTLING.matcher(fields[2]).matches()
+                || !EN_PASSANT.matcher(fields[3]).matches()) {
+            throw new IllegalArgumentException("FEN has a bad side to move, castling or en passant field");
+        }
+        for (int i = 4; i < fields.length; i++) {
+            if (!COUNTER.matcher(fields[i]).matches()) {
+                throw new IllegalArgumentException("FEN has a bad move counter");
+            }
+        }
+
+        Board board = new Board();
+        try {
+            board.loadFromFen(fen);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("FEN is not a valid position");
+        }
+        Side mover = board.getSideToMove();
+        Square otherKing = board.getKingSquare(mover.flip());
+        if (otherKing == null || otherKing == Square.NONE || board.squareAttackedBy(otherKing, mover) != 0) {
+            throw new IllegalArgumentException("FEN is not a legal position: the side not to move is in check");
+        }
+        return fen;
+    }
+
+    /** Throws unless every move is plain UCI, such as {@code e2e4} or {@code e7e8q}. */
+    public static void checkUciMoves(List<String> uciMoves) {
+        for (int i = 0; i < uciMoves.size(); i++) {
+            String move = uciMoves.get(i);
+            if (move == null || !UCI_MOVE.matcher(move).matches()) {
+                throw new IllegalArgumentException("Move " + (i + 1) + " is not a UCI move");
+            }
+        }
+    }
+
+    /** Eight ranks of eight squares, one king per side and no pawns on the back ranks. */
+    private static void checkPlacement(String placement) {
+        String[] ranks = placement.split("/", -1);
+        if (ranks.length != 8) {
+            throw new IllegalArgumentException("FEN placement needs 8 ranks");
+        }
+        int whiteKings = 0;
+        int blackKings = 0;
+        for (int r = 0; r < 8; r++) {
+            int squares = 0;
+            for (int i = 0; i < ranks[r].length(); i++) {
+                char c = ranks[r].charAt(i);
+                if (c >= '1' && c <= '8') {
+                    squares += c - '0';
+                    continue;
+                }
+                if ("pnbrqkPNBRQK".indexOf(c) < 0) {
+                    throw new IllegalArgumentException("FEN placement has an unknown piece '" + c + "'");
+                }
+                if ((c == 'p' || c == 'P') && (r == 0 || r == 7)) {
+                    throw new IllegalArgumentException("FEN has a pawn on the first or last rank");
+                }
+                whiteKings += c == 'K' ? 1 : 0;
+                blackKings += c == 'k' ? 1 : 0;
+                squares++;
+            }
+            if (squares != 8) {
+                throw new IllegalArgumentException("FEN rank " + (8 - r) + " does not have 8 squares");
+            }
+        }
+        if (whiteKings != 1 || blackKings != 1) {
+            throw new IllegalArgumentException("FEN needs exactly one king per side");
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.chess.analysis.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Engine backend that runs searches on {@link EngineWorker}s on other hosts.
+ * Each worker keeps a pool of open connections. A search goes to the worker
+ * with the lowest load: our requests in flight there or the other requests it
+ * last reported running, whichever is higher, per engine. A worker that
+ * refuses connections or breaks one mid-search is marked down and the search
+ * fails over to the next; down workers are only tried when no live one is left, until the
+ * periodic {@link #checkWorkers} reaches them again.
+ * <p>
+ * A line keeps to one connection so the worker's engine reuses its hash from
+ * ply to ply. If the worker fails mid-line, the remaining plies continue on
+ * the next worker.
+ */
+final class RemoteEngines implements EngineBackend, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteEngines.class);
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    // A worker stops an overrunning search itself; this only catches a hung worker
+    private static final long REPLY_GRACE_MS = TimeUnit.SECONDS.toMillis(10);
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final int replyTimeoutMs;
+    private final Counter failovers;
+
+    /** A search attempt on one connection; throws to fail over. */
+    @FunctionalInterface
+    private interface Exchange<T> {
+        T run(Connection connection) throws IOException;
+    }
+
+    /** The worker answered with an error: its engines failed, the connection itself is fine. */
+    private static final class WorkerError extends IOException {
+        WorkerError(String message) {
+            super(message);
+        }
+    }
+
+    RemoteEngines(List<String> addresses, Duration searchTimeout, MeterRegistry meterRegistry) {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("chess.engine.workers lists no workers");
+        }
+        for (String address : addresses) {
+            int colon = address.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Engine worker address is not host:port: " + address);
+            }
+            workers.add(new Worker(address, address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1))));
+        }
+        this.replyTimeoutMs = (int) Math.min(Integer.MAX_VALUE, searchTimeout.toMillis() + REPLY_GRACE_MS);
+        this.failovers = Counter.builder("chess.engine.worker.failovers")
+                .description("Searches moved to another worker after one failed").register(meterRegistry);
+        for (Worker worker : workers) {
+            Gauge.builder("chess.engine.worker.up", worker, w -> w.up ? 1 : 0)
+                    .tag("worker", worker.address).register(meterRegistry);
+            Gauge.builder("chess.engine.worker.in-flight", worker.inFlight, AtomicInteger::get)
+                    .tag("worker", worker.address).description("Our requests running on the worker")
+                    .register(meterRegistry);
+            FunctionCounter.builder("chess.engine.worker.searches", worker.searches, LongAdder::sum)
+                    .tag("worker", worker.address).register(meterRegistry);
+        }
+    }
+
+    @Override
+    public StockfishService.EvalResult evaluateWithBestMove(String fen, StockfishService.SearchLimit limit,
+            StockfishService.Lane lane) throws IOException, InterruptedException {
+        return dispatch(connection -> {
+            EngineProtocol.send(connection.out, EngineProtocol.SEARCH, body -> {
+                EngineProtocol.writeString(body, fen);
+                EngineProtocol.writeLimit(body, limit);
+                body.writeByte(lane.ordinal());
+            });
+            return connection.receiveResult();
+        });
+    }
+
+    @Override
+    public void evaluateLine(String startFen, List<String> fens, List<String> uciMoves, int fromPly, int toPly,
+            IntFunction<StockfishService.SearchLimit> limits,
+            BiConsumer<Integer, StockfishService.EvalResult> onResult) throws IOException, InterruptedException {
+        // Where a failed-over line resumes, and the limit already handed out for that ply
+        int[] nextPly = {fromPly};
+        StockfishService.SearchLimit[] pending = new StockfishService.SearchLimit[1];
+        dispatch(connection -> {
+            int from = nextPly[0];
+            EngineProtocol.send(connection.out, EngineProtocol.LINE, body -> {
+                EngineProtocol.writeString(body, startFen);
+                EngineProtocol.writeStrings(body, fens.subList(0, toPly + 1));
+                EngineProtocol.writeStrings(body, uciMoves.subList(0, toPly));
+                body.writeInt(from);
+                body.writeInt(toPly);
+            });
+            for (int ply = from; ply <= toPly; ply++) {
+                if (pending[0] == null) {
+                    pending[0] = limits.apply(ply);
+                }
+                EngineProtocol.send(connection.out, EngineProtocol.LIMIT,
+                        body -> EngineProtocol.writeLimit(body, pending[0]));
+                StockfishService.EvalResult result = connection.receiveResult();
+                pending[0] = null;
+                nextPly[0] = ply + 1;
+                onResult.accept(ply, result);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs the exchange on the least loaded worker, failing over to the others
+     * in load order. A pooled connection that fails may just have gone stale,
+     * so the same worker first gets one more try on a fresh connection.
+     */
+    private <T> T dispatch(Exchange<T> exchange) throws IOException, InterruptedException {
+        Set<Worker> tried = new HashSet<>();
+        IOException failure = null;
+        Worker worker;
+        while ((worker = next(tried)) != null) {
+            if (failure != null) {
+                failovers.increment();
+                log.warn("Engine worker failed ({}); failing over to {}", failure.getMessage(), worker.address);
+            }
+            try {
+                boolean fresh = false;
+                while (true) {
+                    Connection connection = worker.idle.pollFirst();
+                    if (connection == null) {
+                        connection = connect(worker);
+                        fresh = true;
+                    }
+                    try {
+                        T result = exchange.run(connection);
+                        worker.searches.increment();
+                        worker.release(connection);
+                        return result;
+                    } catch (WorkerError e) {
+                        connection.close();
+                        failure = e;
+                        break;
+                    } catch (IOException e) {
+                        connection.close();
+                        if (Thread.interrupted()) {
+                            // A virtual thread's socket is closed when it is interrupted
+                            throw new InterruptedException();
+                        }
+                        if (fresh) {
+                            throw e;
+                        }
+                        worker.closeIdle();
+                    } catch (RuntimeException e) {
+                        connection.close();
+                        throw e;
+                    }
+                }
+            } catch (IOException e) {
+                worker.markDown(e);
+                failure = e;
+            } finally {
+                worker.inFlight.decrementAndGet();
+            }
+        }
+        throw new IOException("No engine worker could run the search", failure);
+    }
+
+    /**
+     * Picks the least loaded worker not tried yet, live ones before those
+     * marked down, and counts the request against it in the same step so
+     * concurrent callers spread out.
+     */
+    private Worker next(Set<Worker> tried) {
+        synchronized (workers) {
+            Worker best = null;
+            double bestLoad = 0;
+            for (Worker worker : workers) {
+                if (tried.contains(worker)) {
+                    continue;
+                }
+                double load = worker.load();
+                if (best == null || (worker.up && !best.up) || (worker.up == best.up && load < bestLoad)) {
+                    best = worker;
+                    bestLoad = load;
+                }
+            }
+            if (best != null) {
+                tried.add(best);
+                best.inFlight.incrementAndGet();
+            }
+            return best;
+        }
+    }
+
+    private Connection connect(Worker worker) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(worker.host, worker.port), CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(replyTimeoutMs);
+            Connection connection = new Connection(worker, socket);
+            EngineProtocol.Frame hello = EngineProtocol.receive(connection.in);
+            if (hello.type() != EngineProtocol.HELLO) {
+                throw new IOException("Expected HELLO, got frame type " + hello.type());
+            }
+            int version = hello.body().readInt();
+            if (version != EngineProtocol.VERSION) {
+                throw new IOException("Worker speaks protocol version " + version + ", expected "
+                        + EngineProtocol.VERSION);
+            }
+            worker.engines = Math.max(1, hello.body().readInt());
+            worker.batchCapacity = Math.max(1, hello.body().readInt());
+            worker.reportedActive = hello.body().readInt();
+            if (!worker.up) {
+                log.info("Engine worker {} is back with {} engine(s)", worker.address, worker.engines);
+            }
+            worker.up = true;
+            return connection;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a connection to every worker marked down (and, on the first call,
+     * to every worker), so their capacity is known and they rejoin the rotation.
+     */
+    void checkWorkers() {
+        for (Worker worker : workers) {
+            if (worker.up && worker.checked) {
+                continue;
+            }
+            worker.checked = true;
+            try {
+                worker.release(connect(worker));
+            } catch (IOException e) {
+                worker.markDown(e);
+            }
+        }
+    }
+
+    /** Engines on live workers; at least one, so callers still try (and fail over) when all are down. */
+    @Override
+    public int getPoolSize() {
+        return Math.max(1, workers.stream().filter(worker -> worker.up).mapToInt(worker -> worker.engines).sum());
+    }
+
+    @Override
+    public int getBatchCapacity() {
+        return Math.max(1, workers.stream().filter(worker -> worker.up)
+                .mapToInt(worker -> worker.batchCapacity).sum());
+    }
+
+    List<StockfishService.WorkerStats> stats() {
+        return workers.stream()
+                .map(worker -> new StockfishService.WorkerStats(worker.address, worker.up, worker.engines,
+                        worker.batchCapacity, worker.inFlight.get(), worker.reportedActive, worker.idle.size(),
+                        worker.searches.sum(), worker.failures.sum()))
+                .toList();
+    }
+
+    @Override
+    public void close() {
+        workers.forEach(Worker::closeIdle);
+    }
+
+    private static final class Worker {
+
+        private final String address;
+        private final String host;
+        private final int port;
+        private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        // Until the worker's HELLO says otherwise
+        private volatile int engines = 1;
+        private volatile int batchCapacity = 1;
+        private volatile int reportedActive;
+        private volatile boolean up = true;
+        private volatile boolean checked;
+
+        Worker(String address, String host, int port) {
+            this.address = address;
+            this.host = host;
+            this.port = port;
+        }
+
+        /** Our requests there or the other requests it last reported, whichever is higher, per engine. */
+        double load() {
+            return Math.max(inFlight.get(), reportedActive) / (double) engines;
+        }
+
+        /** Keeps the connection for the next search, up to one per engine. */
+        void release(Connection connection) {
+            if (idle.size() < engines) {
+                idle.addFirst(connection);
+            } else {
+                connection.close();
+            }
+        }
+
+        void markDown(IOException e) {
+            failures.increment();
+            if (up) {
+                log.warn("Engine worker {} marked down: {}", address, e.getMessage());
+            }
+            up = false;
+            closeIdle();
+        }
+
+        void closeIdle() {
+            Connection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private static final class Connection {
+
+        private final Worker worker;
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection(Worker worker, Socket socket) throws IOException {
+            this.worker = worker;
+            this.socket = socket;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        StockfishService.EvalResult receiveResult() throws IOException {
+            EngineProtocol.Frame reply = EngineProtocol.receive(in);
+            if (reply.type() == EngineProtocol.ERROR) {
+                throw new WorkerError(worker.address + ": " + EngineProtocol.readString(reply.body()));
+            }
+            if (reply.type() != EngineProtocol.RESULT) {
+                throw new IOException("Expected RESULT, got frame type " + reply.type());
+            }
+            StockfishService.EvalResult result = EngineProtocol.readResult(reply.body());
+            worker.reportedActive = reply.body().readInt();
+            return result;
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.chess.analysis.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Depth searches in progress, keyed by normalized position, so that
+ * concurrent requests for a position being searched wait for that search
+ * instead of repeating it (single flight). A flight answers any request to
+ * the same or a lower depth:
+ * <ul>
+ * <li>once it is running on an engine, every such request;</li>
+ * <li>while it still waits for an engine, only requests in the same or a
+ * lower-priority lane, so an interactive request never queues behind a batch
+ * one, and never a caller that already holds an engine, so engines are never
+ * tied up waiting for each other.</li>
+ * </ul>
+ * A leader whose engine fails goes back to waiting for one, and its flight
+ * with it. A request that cannot join registers its own flight in place of
+ * the one there. When a leader fails or is interrupted its waiters are
+ * released and try again, one of them as the new leader.
+ */
+final class SearchFlights<T> {
+
+    /** One search; {@code depth} is what it will reach. */
+    static final class Flight<T> {
+
+        private final int depth;
+        private final StockfishService.Lane lane;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile boolean running;
+
+        Flight(int depth, StockfishService.Lane lane) {
+            this.depth = depth;
+            this.lane = lane;
+        }
+
+        /** The search has its engine and now finishes without waiting on anything. */
+        void running() {
+            running = true;
+        }
+
+        /**
+         * The engine failed and the search waits for another one: callers
+         * holding an engine must no longer join, or the retry could wait for
+         * an engine they keep while they wait for it.
+         */
+        void queued() {
+            running = false;
+        }
+
+        private boolean answers(Flight<T> request, boolean holdsEngine) {
+            if (depth < request.depth) {
+                return false;
+            }
+            return running || !holdsEngine
+                    && (lane == StockfishService.Lane.INTERACTIVE || request.lane == StockfishService.Lane.BATCH);
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Flight<T>> flights = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Waits for a flight that answers {@code flight}'s request and returns its
+     * result, or registers {@code flight} and returns null: the caller then
+     * searches and must {@link #land} it, whatever the outcome.
+     */
+    T awaitOrLead(long key, Flight<T> flight, boolean holdsEngine) throws InterruptedException {
+        while (true) {
+            Flight<T> leader = flights.compute(key,
+                    (k, current) -> current != null && current.answers(flight, holdsEngine) ? current : flight);
+            if (leader == flight) {
+                return null;
+            }
+            try {
+                T result = leader.result.get();
+                coalesced.increment();
+                return result;
+            } catch (CancellationException | ExecutionException e) {
+                // The leader gave up; try again
+            }
+        }
+    }
+
+    /** Hands the result to the waiters, or with null releases them to search themselves. */
+    void land(long key, Flight<T> flight, T result) {
+        flights.remove(key, flight);
+        if (result != null) {
+            flight.result.complete(result);
+        } else {
+            flight.result.cancel(false);
+        }
+    }
+
+    /** Requests answered by another request's search. */
+    long coalesced() {
+        return coalesced.sum();
+    }
+
+    int size() {
+        return flights.size();
+    }
+}
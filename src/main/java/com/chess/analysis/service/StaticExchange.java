@@ -0,0 +1,206 @@
+package com.chess.analysis.service;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.PieceType;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.move.Move;
+
+/**
+ * Material accounting for sacrifice detection, on bitboards (bit i = square
+ * i, a1 = 0). {@link #captureGain} is what a move itself wins;
+ * {@link #threat} is what the side to move can then win back by the best
+ * capture sequence on any one square, found with the swap algorithm: both
+ * sides recapture with their least valuable attacker, and either may stop
+ * when carrying on would lose material. Pieces uncovered behind a capturer
+ * (x-rays) join the exchange. Pins, checks and en passant are ignored.
+ * <p>
+ * Values are in pawns: 1, 3, 3, 5, 9. The king counts as 100 so that it
+ * only ever captures onto an undefended square.
+ */
+final class StaticExchange {
+
+    // Indexed by type: pawn, knight, bishop, rook, queen, king
+    private static final int[] VALUES = {1, 3, 3, 5, 9, 100};
+    private static final Piece[] PIECES = {
+            Piece.WHITE_PAWN, Piece.WHITE_KNIGHT, Piece.WHITE_BISHOP,
+            Piece.WHITE_ROOK, Piece.WHITE_QUEEN, Piece.WHITE_KING,
+            Piece.BLACK_PAWN, Piece.BLACK_KNIGHT, Piece.BLACK_BISHOP,
+            Piece.BLACK_ROOK, Piece.BLACK_QUEEN, Piece.BLACK_KING};
+    private static final int PAWN = 0;
+    private static final int KNIGHT = 1;
+    private static final int BISHOP = 2;
+    private static final int ROOK = 3;
+    private static final int QUEEN = 4;
+    private static final int KING = 5;
+    private static final int BLACK = 6; // offset of the black pieces in PIECES
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    // Squares from which a pawn of that colour attacks the index square
+    private static final long[] WHITE_PAWN_ATTACKERS = new long[64];
+    private static final long[] BLACK_PAWN_ATTACKERS = new long[64];
+    private static final int[][] DIAGONALS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] LINES = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    static {
+        int[][] knight = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] king = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = jumps(square, knight);
+            KING_ATTACKS[square] = jumps(square, king);
+            WHITE_PAWN_ATTACKERS[square] = jumps(square, new int[][] {{-1, -1}, {1, -1}});
+            BLACK_PAWN_ATTACKERS[square] = jumps(square, new int[][] {{-1, 1}, {1, 1}});
+        }
+    }
+
+    private StaticExchange() {
+    }
+
+    /** Material {@code move} wins by itself: the piece it captures plus any promotion gain. */
+    static int captureGain(Board board, Move move) {
+        int gain = 0;
+        Piece captured = board.getPiece(move.getTo());
+        if (captured != Piece.NONE) {
+            gain = value(captured);
+        } else if (board.getPiece(move.getFrom()).getPieceType() == PieceType.PAWN
+                && move.getFrom().ordinal() % 8 != move.getTo().ordinal() % 8) {
+            gain = VALUES[PAWN]; // en passant
+        }
+        Piece promotion = move.getPromotion();
+        if (promotion != null && promotion != Piece.NONE) {
+            gain += value(promotion) - VALUES[PAWN];
+        }
+        return gain;
+    }
+
+    /**
+     * The most material the side to move can win with a capture sequence
+     * against one of the other side's pieces; 0 when every capture loses or
+     * there is none.
+     */
+    static int threat(Board board) {
+        long[] pieces = new long[PIECES.length];
+        for (int i = 0; i < PIECES.length; i++) {
+            pieces[i] = board.getBitboard(PIECES[i]);
+        }
+        boolean whiteAttacks = board.getSideToMove() == Side.WHITE;
+        int victim = whiteAttacks ? BLACK : 0;
+        long occupied = board.getBitboard();
+        long targets = board.getBitboard(whiteAttacks ? Side.BLACK : Side.WHITE) & ~pieces[victim + KING];
+
+        int best = 0;
+        int[] gain = new int[32];
+        for (long remaining = targets; remaining != 0; remaining &= remaining - 1) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            int target = typeOn(pieces, victim, 1L << square);
+            best = Math.max(best, exchange(pieces, occupied, square, VALUES[target], whiteAttacks, gain));
+        }
+        return best;
+    }
+
+    /**
+     * Swap-off on {@code square}: the net gain of the side that captures
+     * first, assuming each side then recaptures only while it pays.
+     * Negative if even the first capture loses; 0 if there is none.
+     */
+    private static int exchange(long[] pieces, long occupied, int square, int targetValue, boolean whiteFirst,
+            int[] gain) {
+        int onSquare = targetValue;
+        boolean white = whiteFirst;
+        int depth = -1;
+        while (true) {
+            long attackers = attackersTo(pieces, square, occupied) & occupied;
+            int offset = white ? 0 : BLACK;
+            int type = -1;
+            long from = 0;
+            for (int t = PAWN; t <= KING; t++) {
+                long candidates = pieces[offset + t] & attackers;
+                if (candidates != 0) {
+                    type = t;
+                    from = candidates & -candidates;
+                    break;
+                }
+            }
+            if (type < 0) {
+                break;
+            }
+            depth++;
+            gain[depth] = onSquare - (depth > 0 ? gain[depth - 1] : 0);
+            onSquare = VALUES[type];
+            occupied ^= from; // may uncover a slider behind it
+            white = !white;
+        }
+        if (depth < 0) {
+            return 0;
+        }
+        // Unwind: each side takes the better of stopping and recapturing
+        for (; depth > 0; depth--) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        }
+        return gain[0];
+    }
+
+    /** Pieces of either colour that attack {@code square} given {@code occupied}; the caller masks by occupancy. */
+    private static long attackersTo(long[] pieces, int square, long occupied) {
+        long diagonal = pieces[BISHOP] | pieces[QUEEN] | pieces[BLACK + BISHOP] | pieces[BLACK + QUEEN];
+        long straight = pieces[ROOK] | pieces[QUEEN] | pieces[BLACK + ROOK] | pieces[BLACK + QUEEN];
+        return (WHITE_PAWN_ATTACKERS[square] & pieces[PAWN])
+                | (BLACK_PAWN_ATTACKERS[square] & pieces[BLACK + PAWN])
+                | (KNIGHT_ATTACKS[square] & (pieces[KNIGHT] | pieces[BLACK + KNIGHT]))
+                | (KING_ATTACKS[square] & (pieces[KING] | pieces[BLACK + KING]))
+                | (slide(square, occupied, DIAGONALS) & diagonal)
+                | (slide(square, occupied, LINES) & straight);
+    }
+
+    /** Squares a slider on {@code square} reaches, up to and including the first occupied one per ray. */
+    private static long slide(int square, long occupied, int[][] directions) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int file = square % 8 + direction[0];
+            int rank = square / 8 + direction[1];
+            while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static long jumps(int square, int[][] offsets) {
+        long targets = 0;
+        for (int[] offset : offsets) {
+            int file = square % 8 + offset[0];
+            int rank = square / 8 + offset[1];
+            if (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                targets |= 1L << (rank * 8 + file);
+            }
+        }
+        return targets;
+    }
+
+    private static int typeOn(long[] pieces, int offset, long bit) {
+        for (int t = PAWN; t <= KING; t++) {
+            if ((pieces[offset + t] & bit) != 0) {
+                return t;
+            }
+        }
+        throw new IllegalStateException("No piece on square " + Long.numberOfTrailingZeros(bit));
+    }
+
+    private static int value(Piece piece) {
+        return switch (piece.getPieceType()) {
+            case PAWN -> VALUES[PAWN];
+            case KNIGHT -> VALUES[KNIGHT];
+            case BISHOP -> VALUES[BISHOP];
+            case ROOK -> VALUES[ROOK];
+            case QUEEN -> VALUES[QUEEN];
+            default -> 0;
+        };
+    }
+}
@@ -1,92 +1,783 @@
 package com.chess.analysis.service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
+/**
+ * Pool of supervised Stockfish processes. Every read from an engine has a
+ * deadline: a search that overruns gets {@code stop}, and an engine that does
+ * not answer that either is killed. Engines that die, time out or fail an
+ * {@code isready} health check are replaced, and a failed search is retried
+ * once on a fresh engine. Slots whose process cannot be restarted stay
+ * quarantined until the periodic health check manages to respawn them.
+ * <p>
+ * The layout (engine count, UCI {@code Threads} per engine, {@code Hash}) comes
+ * from {@code chess.engine.*}; with {@code calibrate-on-startup} the service
+ * first benchmarks several engines-by-threads layouts on this host and runs the
+ * fastest one.
+ * <p>
+ * With {@code chess.engine.backend=REMOTE} no local engines are started:
+ * searches go to the {@link EngineWorker}s listed in
+ * {@code chess.engine.workers} through {@link RemoteEngines}, and the workers'
+ * own pools do the supervision.
+ * <p>
+ * Positions and moves are checked with {@link PositionValidator} before any
+ * of them is written into a {@code position} command; bad ones are refused
+ * with an {@link IllegalArgumentException}.
+ */
 @Service
-public class StockfishService {
+public class StockfishService implements EngineBackend {
+
+    private static final Logger log = LoggerFactory.getLogger(StockfishService.class);
+    private static final long READY_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long STOP_GRACE_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_ATTEMPTS = 2;
+    // Calibration depths: deep enough to load the engines, short enough for a run to finish
+    static final int MIN_CALIBRATION_DEPTH = 6;
+    static final int MAX_CALIBRATION_DEPTH = 18;
+
+    // Middlegame and endgame positions from Stockfish's bench set, plus the start position
+    private static final List<String> CALIBRATION_FENS = List.of(
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 10",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 11",
+            "4rrk1/pp1n3p/3q2pQ/2p1pb2/2PP4/2P3N1/P2B2PP/4RRK1 b - - 7 19",
+            "r3r1k1/2p2ppp/p1p1bn2/8/1q2P3/2NPQN2/PPP3PP/R4RK1 b - - 2 15",
+            "r1bbk1nr/pp3p1p/2n5/1N4p1/2Np1B2/8/PPP2PPP/2KR1B1R w kq - 0 13",
+            "r1bq1rk1/ppp1nppp/4n3/3p3Q/3P4/1BP1B3/PP1N2PP/R4RK1 w - - 1 16",
+            "4r1k1/r1q2ppp/ppp2n2/4P3/5Rb1/1N1BQ3/PPP3PP/R5K1 w - - 1 17",
+            "2rqkb1r/ppp2p2/2npb1p1/1N1Nn2p/2P1PP2/8/PP2B1PP/R1BQK2R b KQ - 0 11");
 
     /**
      * Packages the centipawn evaluation plus the engine's recommended best move
-     * (UCI).
+     * (UCI) and the principal variation it expects to follow. {@code truncated}
+     * marks the best move so far of a search the supervisor deadline cut short,
+     * which is shallower than asked for and must not be kept.
      */
-    public record EvalResult(int evaluation, String bestMove) {
+    public record EvalResult(int evaluation, String bestMove, List<String> pv, boolean truncated) {
+
+        public EvalResult(int evaluation, String bestMove, List<String> pv) {
+            this(evaluation, bestMove, pv, false);
+        }
+
+        public EvalResult(int evaluation, String bestMove) {
+            this(evaluation, bestMove, List.of());
+        }
+
+        EvalResult asTruncated() {
+            return new EvalResult(evaluation, bestMove, pv, true);
+        }
     }
 
-    private BlockingQueue<StockfishEngine> enginePool;
-    private final int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    /**
+     * How long one search runs: to {@code depth}, or for {@code moveTimeMs}
+     * when that is positive. Timed searches still use {@code depth} as the
+     * cache floor: a cached result at least that deep is returned instead.
+     * A {@code deadlineNanos} ({@link System#nanoTime}, 0 = none) bounds the
+     * wait for a local engine; it is not sent to remote workers.
+     */
+    public record SearchLimit(int depth, long moveTimeMs, long deadlineNanos) {
+
+        public SearchLimit(int depth, long moveTimeMs) {
+            this(depth, moveTimeMs, 0);
+        }
+
+        public static SearchLimit toDepth(int depth) {
+            return new SearchLimit(depth, 0);
+        }
+
+        public static SearchLimit forTime(long moveTimeMs, int cacheDepth) {
+            return new SearchLimit(cacheDepth, Math.max(1, moveTimeMs));
+        }
+
+        /** This limit for a search that is not worth starting after {@code deadlineNanos}. */
+        public SearchLimit until(long deadlineNanos) {
+            return new SearchLimit(depth, moveTimeMs, deadlineNanos);
+        }
+
+        String goCommand() {
+            return moveTimeMs > 0 ? "go movetime " + moveTimeMs : "go depth " + depth;
+        }
+    }
+
+    /**
+     * Pool health: idle and quarantined slots plus lifetime failure counters.
+     * With remote engines only {@code size} and {@code workers} are filled in.
+     */
+    public record PoolStats(int size, int threadsPerEngine, int hashMb, int idle, int reservedForInteractive,
+            int quarantined, long timeouts, long kills, long restarts, LaneStats interactive, LaneStats batch,
+            List<WorkerStats> workers) {
+    }
+
+    /**
+     * One remote engine worker: its engines as of the last connection, our
+     * requests running there, the other requests it last reported, and pooled
+     * connections.
+     */
+    public record WorkerStats(String address, boolean up, int engines, int batchCapacity, int inFlight,
+            int reportedActive, int idleConnections, long searches, long failures) {
+    }
+
+    /** Where searches run: engine processes on this host, or remote {@link EngineWorker}s. */
+    public enum Backend {
+        LOCAL, REMOTE
+    }
+
+    /**
+     * Who is asking for an engine. Interactive requests (the live board) may use
+     * every engine and go first; batch analysis leaves reserved engines alone
+     * and gives its engine back between plies when interactive requests wait.
+     */
+    public enum Lane {
+        INTERACTIVE, BATCH
+    }
+
+    /** Engine acquisitions and time spent waiting for an engine in one lane. */
+    public record LaneStats(long acquired, int waiting, double meanWaitMs, double maxWaitMs) {
+    }
+
+    /** Throughput of one engines-by-threads layout measured by {@link #calibrate}. */
+    public record LayoutScore(int engines, int threads, double positionsPerSecond) {
+    }
+
+    private EnginePool<StockfishEngine> enginePool;
+    // Set with the REMOTE backend, which then replaces the local pool
+    private final RemoteEngines remoteEngines;
+    private int poolSize;
+    private final int interactiveReserved;
+    private int engineThreads;
+    private final int hashMb;
+    private final boolean calibrateOnStartup;
+    private final int calibrationDepth;
+    private final AtomicBoolean calibrating = new AtomicBoolean();
+    private final EvaluationCache evaluationCache;
+    private final String enginePath;
+    private final LongAdder nodesSearched = new LongAdder();
+    private final SearchFlights<EvalResult> flights = new SearchFlights<>();
+    private final MeterRegistry meterRegistry;
+    private final Map<Lane, Timer> waitTimers = new EnumMap<>(Lane.class);
+
+    private final long searchTimeoutNanos;
+    private final Duration healthCheckInterval;
+    private final int maxStrikes;
+    private final ScheduledExecutorService supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stockfish-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger engineIds = new AtomicInteger();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder kills = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+
+    public StockfishService(EvaluationCache evaluationCache, MeterRegistry meterRegistry, EngineProperties properties) {
+        this.evaluationCache = evaluationCache;
+        this.enginePath = properties.path();
+        this.searchTimeoutNanos = properties.searchTimeout().toNanos();
+        this.healthCheckInterval = properties.healthCheckInterval();
+        this.maxStrikes = Math.max(1, properties.maxStrikes());
+        this.engineThreads = Math.max(1, properties.threads());
+        // 0 = one engine per spare core (all cores but one, for the web server), divided by threads
+        this.poolSize = properties.poolSize() > 0 ? properties.poolSize()
+                : Math.max(1, availableCores() / this.engineThreads);
+        this.hashMb = Math.max(1, properties.hashMb());
+        this.calibrateOnStartup = properties.calibrateOnStartup();
+        this.calibrationDepth = properties.calibrationDepth();
+        this.interactiveReserved = Math.max(0, properties.interactiveReserved());
+        this.meterRegistry = meterRegistry;
+        this.remoteEngines = properties.backend() == Backend.REMOTE
+                ? new RemoteEngines(properties.workers().stream().map(String::trim)
+                        .filter(address -> !address.isEmpty()).toList(), properties.searchTimeout(), meterRegistry)
+                : null;
+        registerMetrics();
+    }
+
+    /**
+     * Pool gauges, failure and throughput counters, and the cache's hit ratio.
+     * Waits for an engine and search latencies are timed where they happen.
+     */
+    private void registerMetrics() {
+        Gauge.builder("chess.engine.pool.size", this, StockfishService::getPoolSize)
+                .description("Engine slots in the pool").register(meterRegistry);
+        Gauge.builder("chess.engine.pool.idle", this,
+                service -> service.enginePool != null ? service.enginePool.idleCount() : 0)
+                .description("Engines waiting for work").register(meterRegistry);
+        Gauge.builder("chess.engine.pool.quarantined", this,
+                service -> service.enginePool != null ? service.enginePool.quarantinedCount() : 0)
+                .description("Engine slots whose process could not be restarted").register(meterRegistry);
+        for (Lane lane : Lane.values()) {
+            String tag = lane.name().toLowerCase();
+            Gauge.builder("chess.engine.pool.waiting", this,
+                    service -> service.enginePool != null ? service.enginePool.stats(lane).waiting() : 0)
+                    .tag("lane", tag).description("Callers waiting for an engine").register(meterRegistry);
+            waitTimers.put(lane, Timer.builder("chess.engine.pool.wait").tag("lane", tag)
+                    .description("Time spent waiting for an idle engine")
+                    .publishPercentileHistogram().register(meterRegistry));
+        }
+        FunctionCounter.builder("chess.engine.restarts", restarts, LongAdder::sum)
+                .description("Engines replaced after failing").register(meterRegistry);
+        FunctionCounter.builder("chess.engine.kills", kills, LongAdder::sum)
+                .description("Engines killed for not answering").register(meterRegistry);
+        FunctionCounter.builder("chess.engine.timeouts", timeouts, LongAdder::sum)
+                .description("Searches stopped at their deadline").register(meterRegistry);
+        FunctionCounter.builder("chess.engine.nodes", nodesSearched, LongAdder::sum)
+                .description("Nodes searched by all engines").register(meterRegistry);
+        FunctionCounter.builder("chess.engine.coalesced", flights, SearchFlights::coalesced)
+                .description("Searches answered by an identical search already in flight").register(meterRegistry);
+
+        FunctionCounter.builder("chess.cache.lookups", evaluationCache, cache -> cache.stats().hits())
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("chess.cache.lookups", evaluationCache, cache -> cache.stats().misses())
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("chess.cache.evictions", evaluationCache, cache -> cache.stats().evictions())
+                .register(meterRegistry);
+        Gauge.builder("chess.cache.size", evaluationCache, cache -> cache.stats().size())
+                .description("Cached positions").register(meterRegistry);
+    }
 
     @PostConstruct
-    public void initPool() throws IOException {
-        enginePool = new ArrayBlockingQueue<>(poolSize);
+    public void initPool() throws IOException, InterruptedException {
+        long intervalMs = healthCheckInterval.toMillis();
+        if (remoteEngines != null) {
+            remoteEngines.checkWorkers();
+            log.info("Using {} engine(s) on remote workers: {}", remoteEngines.getPoolSize(),
+                    remoteEngines.stats().stream().map(worker -> worker.address() + (worker.up() ? "" : " (down)"))
+                            .toList());
+            supervisor.scheduleWithFixedDelay(remoteEngines::checkWorkers, intervalMs, intervalMs,
+                    TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (calibrateOnStartup) {
+            LayoutScore best = calibrate(calibrationDepth).get(0);
+            poolSize = best.engines();
+            engineThreads = best.threads();
+        }
+        log.info("Starting {} engine(s) with Threads={} Hash={}MB", poolSize, engineThreads, hashMb);
+        enginePool = new EnginePool<>(poolSize, getInteractiveReserved());
         for (int i = 0; i < poolSize; i++) {
-            enginePool.offer(new StockfishEngine());
+            enginePool.release(new StockfishEngine(engineThreads));
         }
+        supervisor.scheduleWithFixedDelay(this::superviseEngines, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
     }
 
     @PreDestroy
     public void destroyPool() {
+        supervisor.shutdownNow();
         if (enginePool != null) {
-            for (StockfishEngine engine : enginePool) {
-                engine.close();
-            }
+            enginePool.drain().forEach(StockfishEngine::close);
+        }
+        if (remoteEngines != null) {
+            remoteEngines.close();
         }
     }
 
     /**
      * Returns only the centipawn evaluation — used by the live /api/evaluate
-     * endpoint.
+     * endpoint, in the interactive lane. Shares cache entries with
+     * {@link #evaluateWithBestMove}, since the engine reports the best move for
+     * free.
      */
     public int evaluatePosition(String fen, int depth) throws IOException, InterruptedException {
-        StockfishEngine engine = enginePool.take();
+        return evaluateWithBestMove(fen, depth).evaluation();
+    }
+
+    /**
+     * Returns both the centipawn evaluation AND the engine's best move (UCI) — used
+     * by the live /api/bestmove endpoint, in the interactive lane. Positions
+     * already searched at this depth or deeper are answered from the
+     * {@link EvaluationCache} without touching an engine, and positions being
+     * searched that deep right now by waiting for that search
+     * ({@link SearchFlights}).
+     */
+    public EvalResult evaluateWithBestMove(String fen, int depth) throws IOException, InterruptedException {
+        return evaluateWithBestMove(fen, SearchLimit.toDepth(depth), Lane.INTERACTIVE);
+    }
+
+    @Override
+    public EvalResult evaluateWithBestMove(String fen, SearchLimit limit, Lane lane)
+            throws IOException, InterruptedException {
+        fen = PositionValidator.checkFen(fen);
+        EvalResult cached = evaluationCache.get(fen, limit.depth());
+        if (cached != null) {
+            return cached;
+        }
+        if (limit.moveTimeMs() > 0) {
+            // How deep a timed search gets is only known once it ends, so nobody can wait for it
+            return search(fen, limit, lane, null);
+        }
+        long key = EvaluationCache.positionKey(fen);
+        SearchFlights.Flight<EvalResult> flight = new SearchFlights.Flight<>(limit.depth(), lane);
+        EvalResult shared = flights.awaitOrLead(key, flight, false);
+        if (shared != null) {
+            return shared;
+        }
+        EvalResult result = null;
         try {
-            return engine.evaluatePosition(fen, depth);
+            result = search(fen, limit, lane, flight);
+            return result;
         } finally {
-            enginePool.offer(engine);
+            flights.land(key, flight, result);
+        }
+    }
+
+    private EvalResult search(String fen, SearchLimit limit, Lane lane, SearchFlights.Flight<EvalResult> flight)
+            throws IOException, InterruptedException {
+        if (remoteEngines != null) {
+            if (flight != null) {
+                flight.running();
+            }
+            // Workers cache their own results, shared by every app node
+            return remoteEngines.evaluateWithBestMove(fen, limit, lane);
+        }
+        for (int attempt = 1;; attempt++) {
+            StockfishEngine engine = acquire(lane, limit.deadlineNanos());
+            if (flight != null) {
+                flight.running();
+            }
+            boolean healthy = true;
+            try {
+                EvalResult result = engine.evaluateWithBestMove(fen, limit);
+                cacheResult(engine, fen, limit, result);
+                return result;
+            } catch (IOException e) {
+                healthy = false;
+                if (flight != null) {
+                    // Before the engine's replacement is released, where a caller could take it and join
+                    flight.queued();
+                }
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Engine failed ({}); retrying on a fresh engine", e.getMessage());
+            } finally {
+                release(engine, healthy);
+            }
         }
     }
 
     /**
-     * Returns both the centipawn evaluation AND the engine's best move (UCI) — used
-     * by batch analysis.
+     * Progressive deepening for the live board: searches {@code fen} in the
+     * interactive lane to {@code maxDepth} or for {@code maxTime}, whichever
+     * ends first, and hands every completed depth's score, best move and PV
+     * to {@code onDepth} as the engine reports it. Returns the final result.
+     * Interrupting the caller stops the engine at once ({@code stop}) and
+     * returns it to the pool. A position cached at {@code maxDepth} is
+     * reported once from the cache; remote engines report only the result of
+     * a timed search, with depth 0.
      */
-    public EvalResult evaluateWithBestMove(String fen, int depth) throws IOException, InterruptedException {
-        StockfishEngine engine = enginePool.take();
+    public EvalResult evaluateLive(String fen, int maxDepth, Duration maxTime, BiConsumer<Integer, EvalResult> onDepth)
+            throws IOException, InterruptedException {
+        fen = PositionValidator.checkFen(fen);
+        EvalResult cached = evaluationCache.get(fen, maxDepth);
+        if (cached != null) {
+            onDepth.accept(maxDepth, cached);
+            return cached;
+        }
+        if (remoteEngines != null) {
+            EvalResult result = remoteEngines.evaluateWithBestMove(fen,
+                    SearchLimit.forTime(maxTime.toMillis(), maxDepth), Lane.INTERACTIVE);
+            onDepth.accept(0, result);
+            return result;
+        }
+        StockfishEngine engine = acquire(Lane.INTERACTIVE, 0);
+        boolean healthy = true;
+        try {
+            EvalResult result = engine.evaluateLive(fen, maxDepth, maxTime.toMillis(),
+                    message -> onDepth.accept(message.depth(), message.result()));
+            if (!engine.truncated && engine.depthReached > 0) {
+                evaluationCache.put(fen, engine.depthReached, result);
+            }
+            return result;
+        } catch (IOException e) {
+            healthy = false;
+            throw e;
+        } finally {
+            release(engine, healthy);
+        }
+    }
+
+    /**
+     * Searches plies {@code fromPly..toPly} (inclusive) of one game in order on a
+     * single engine. {@code fens.get(ply)} is the position after {@code ply}
+     * half-moves and {@code uciMoves} holds the game's moves, so each search is
+     * sent as {@code position startpos moves ...} (or {@code position fen
+     * <startFen> moves ...} when the game has a set-up position) after one
+     * {@code ucinewgame}, and the hash warmed by ply N carries over to ply N+1.
+     * Each result is handed to {@code onResult} as soon as it is known; cached
+     * plies are skipped, and plies another request is already searching on an
+     * engine are waited for instead of searched again. If the engine fails mid-line, the remaining plies
+     * continue on a replacement. Runs in the batch lane: while interactive
+     * requests wait, the engine is handed back between plies and the rest of
+     * the line continues on the next free one.
+     */
+    public void evaluateLine(String startFen, List<String> fens, List<String> uciMoves, int fromPly, int toPly,
+            int depth, BiConsumer<Integer, EvalResult> onResult) throws IOException, InterruptedException {
+        evaluateLine(startFen, fens, uciMoves, fromPly, toPly, ply -> SearchLimit.toDepth(depth), onResult);
+    }
+
+    /**
+     * Same as above with a limit chosen per ply just before it is searched, so
+     * a caller can hand out a time budget based on the results so far.
+     */
+    @Override
+    public void evaluateLine(String startFen, List<String> fens, List<String> uciMoves, int fromPly, int toPly,
+            IntFunction<SearchLimit> limits, BiConsumer<Integer, EvalResult> onResult)
+            throws IOException, InterruptedException {
+        if (startFen != null) {
+            startFen = PositionValidator.checkFen(startFen);
+        }
+        PositionValidator.checkUciMoves(uciMoves.subList(0, toPly));
+        if (remoteEngines != null) {
+            remoteEngines.evaluateLine(startFen, fens, uciMoves, fromPly, toPly, limits, onResult);
+            return;
+        }
+        StockfishEngine engine = null;
+        try {
+            for (int ply = fromPly; ply <= toPly; ply++) {
+                String fen = fens.get(ply);
+                SearchLimit limit = limits.apply(ply);
+                EvalResult result = evaluationCache.get(fen, limit.depth());
+                long key = 0;
+                SearchFlights.Flight<EvalResult> flight = null;
+                if (result == null && limit.moveTimeMs() == 0) {
+                    key = EvaluationCache.positionKey(fen);
+                    SearchFlights.Flight<EvalResult> own = new SearchFlights.Flight<>(limit.depth(), Lane.BATCH);
+                    result = flights.awaitOrLead(key, own, engine != null);
+                    flight = result == null ? own : null;
+                }
+                try {
+                    for (int attempt = 1; result == null; attempt++) {
+                        try {
+                            if (engine == null) {
+                                engine = acquire(Lane.BATCH, limit.deadlineNanos());
+                                engine.newGame();
+                            }
+                            if (flight != null) {
+                                flight.running();
+                            }
+                            result = engine.evaluateMoves(startFen, uciMoves.subList(0, ply), limit);
+                            cacheResult(engine, fen, limit, result);
+                        } catch (NoEngineInTime e) {
+                            throw e;
+                        } catch (IOException e) {
+                            if (flight != null) {
+                                flight.queued();
+                            }
+                            release(engine, false);
+                            engine = null;
+                            if (attempt == MAX_ATTEMPTS) {
+                                throw e;
+                            }
+                            log.warn("Engine failed at ply {} ({}); retrying on a fresh engine", ply,
+                                    e.getMessage());
+                        }
+                    }
+                } finally {
+                    if (flight != null) {
+                        flights.land(key, flight, result);
+                    }
+                }
+                onResult.accept(ply, result);
+                if (engine != null && ply < toPly && enginePool.interactiveWaiting()) {
+                    release(engine, true);
+                    engine = null;
+                }
+            }
+        } finally {
+            release(engine, true);
+        }
+    }
+
+    /** Waits for an engine until {@code deadlineNanos} (0 = no deadline). */
+    private StockfishEngine acquire(Lane lane, long deadlineNanos) throws InterruptedException, NoEngineInTime {
+        long start = System.nanoTime();
+        StockfishEngine engine = enginePool.acquire(lane, deadlineNanos);
+        waitTimers.get(lane).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (engine == null) {
+            throw new NoEngineInTime(lane);
+        }
+        return engine;
+    }
+
+    /**
+     * No engine came free before the search's deadline, so the position was
+     * not searched. Not an engine failure: it is neither retried nor held
+     * against an engine.
+     */
+    static final class NoEngineInTime extends IOException {
+
+        NoEngineInTime(Lane lane) {
+            super("No " + lane.name().toLowerCase() + " engine free before the search deadline");
+        }
+    }
+
+    /**
+     * Caches a completed search under the depth it actually reached; searches
+     * cut short by the supervisor deadline are not cached.
+     */
+    private void cacheResult(StockfishEngine engine, String fen, SearchLimit limit, EvalResult result) {
+        int depthReached = limit.moveTimeMs() > 0 ? engine.depthReached : limit.depth();
+        if (!engine.truncated && depthReached > 0) {
+            evaluationCache.put(fen, depthReached, result);
+        }
+    }
+
+    /**
+     * Returns an engine to the pool, or retires it when it failed, died or
+     * timed out too often in a row and puts a freshly started one in its place.
+     */
+    private void release(StockfishEngine engine, boolean healthy) {
+        if (engine == null) {
+            return;
+        }
+        if (healthy && engine.isAlive() && !engine.searching && engine.strikes < maxStrikes) {
+            enginePool.release(engine);
+            return;
+        }
+        log.warn("Retiring engine {} (healthy={}, alive={}, searching={}, strikes={})", engine.id, healthy,
+                engine.isAlive(), engine.searching, engine.strikes);
+        engine.close();
+        respawn();
+    }
+
+    private boolean respawn() {
+        try {
+            enginePool.release(new StockfishEngine(engineThreads));
+            restarts.increment();
+            return true;
+        } catch (IOException e) {
+            log.error("Could not restart engine, slot quarantined: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        enginePool.quarantine();
+        return false;
+    }
+
+    /**
+     * Periodic health check: retries quarantined slots, then sends
+     * {@code isready} to every idle engine and replaces the ones that do not
+     * answer in time.
+     */
+    private void superviseEngines() {
         try {
-            return engine.evaluateWithBestMove(fen, depth);
+            while (enginePool.unquarantine()) {
+                if (!respawn()) {
+                    break;
+                }
+                log.info("Quarantined engine slot restored");
+            }
+            for (int idle = enginePool.idleCount(); idle > 0; idle--) {
+                StockfishEngine engine = enginePool.poll();
+                if (engine == null) {
+                    break;
+                }
+                release(engine, engine.isReady());
+            }
+        } catch (RuntimeException e) {
+            log.error("Engine health check failed", e);
+        }
+    }
+
+    @Override
+    public int getPoolSize() {
+        return remoteEngines != null ? remoteEngines.getPoolSize() : poolSize;
+    }
+
+    /**
+     * Engines batch analysis can use at once: the pool minus those kept for
+     * interactive requests, or what the live remote workers offer.
+     */
+    @Override
+    public int getBatchCapacity() {
+        return remoteEngines != null ? remoteEngines.getBatchCapacity() : poolSize - getInteractiveReserved();
+    }
+
+    // Batch work always keeps at least one engine
+    private int getInteractiveReserved() {
+        return Math.min(interactiveReserved, poolSize - 1);
+    }
+
+    public PoolStats getPoolStats() {
+        if (remoteEngines != null) {
+            LaneStats none = new LaneStats(0, 0, 0, 0);
+            return new PoolStats(getPoolSize(), 0, 0, 0, 0, 0, 0, 0, 0, none, none, remoteEngines.stats());
+        }
+        return new PoolStats(poolSize, engineThreads, hashMb, enginePool.idleCount(), enginePool.reserved(),
+                enginePool.quarantinedCount(), timeouts.sum(), kills.sum(), restarts.sum(),
+                enginePool.stats(Lane.INTERACTIVE), enginePool.stats(Lane.BATCH), List.of());
+    }
+
+    public int getCalibrationDepth() {
+        return calibrationDepth;
+    }
+
+    /**
+     * Measures positions searched per second at {@code depth} (clamped to
+     * {@value #MIN_CALIBRATION_DEPTH}..{@value #MAX_CALIBRATION_DEPTH}) for
+     * every layout of N engines with T threads each that fills the available
+     * cores (T = 1, 2, 4, ...), using temporary engines outside the pool.
+     * Returns the scores fastest first. When called on a running service the
+     * pool competes for the same cores, so run it on an idle instance. Only
+     * one calibration runs at a time: IllegalStateException while another is
+     * going, and with remote engines, which have no local cores to measure.
+     */
+    public List<LayoutScore> calibrate(int depth) throws IOException, InterruptedException {
+        if (remoteEngines != null) {
+            throw new IllegalStateException("Engines run on remote workers; calibrate those hosts");
+        }
+        if (!calibrating.compareAndSet(false, true)) {
+            throw new IllegalStateException("A calibration is already running");
+        }
+        try {
+            int clamped = Math.clamp(depth, MIN_CALIBRATION_DEPTH, MAX_CALIBRATION_DEPTH);
+            int cores = availableCores();
+            List<LayoutScore> scores = new ArrayList<>();
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                LayoutScore score = measureLayout(cores / threads, threads, clamped);
+                log.info("Calibration: {} engine(s) x {} thread(s): {} positions/s", score.engines(), threads,
+                        String.format("%.2f", score.positionsPerSecond()));
+                scores.add(score);
+            }
+            scores.sort(Comparator.comparingDouble(LayoutScore::positionsPerSecond).reversed());
+            log.info("Calibration picked {} engine(s) x {} thread(s)", scores.get(0).engines(),
+                    scores.get(0).threads());
+            return scores;
         } finally {
-            enginePool.offer(engine);
+            calibrating.set(false);
         }
     }
 
+    private LayoutScore measureLayout(int engines, int threads, int depth)
+            throws IOException, InterruptedException {
+        // At least two positions per engine so every engine is busy for most of the run
+        ConcurrentLinkedQueue<String> positions = new ConcurrentLinkedQueue<>();
+        while (positions.size() < Math.max(CALIBRATION_FENS.size(), 2 * engines)) {
+            positions.addAll(CALIBRATION_FENS);
+        }
+        int total = positions.size();
+
+        List<StockfishEngine> started = new ArrayList<>();
+        ExecutorService workers = Executors.newFixedThreadPool(engines);
+        try {
+            for (int i = 0; i < engines; i++) {
+                started.add(new StockfishEngine(threads));
+            }
+            long start = System.nanoTime();
+            List<Future<Void>> done = new ArrayList<>();
+            for (StockfishEngine engine : started) {
+                done.add(workers.submit(() -> {
+                    String fen;
+                    while ((fen = positions.poll()) != null) {
+                        engine.newGame(); // a cleared hash, so repeated positions cost the same
+                        engine.search("position fen " + fen, "go depth " + depth, "calibration", null);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : done) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Calibration search failed", e.getCause());
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return new LayoutScore(engines, threads, total / seconds);
+        } finally {
+            workers.shutdownNow();
+            started.forEach(StockfishEngine::close);
+        }
+    }
+
+    /**
+     * Search latency per requested depth ("movetime" for timed searches, "live"
+     * for the live board, "calibration" for layout benchmarks) and outcome; its
+     * count is the engines' positions per second.
+     */
+    private Timer searchTimer(String depth, String outcome) {
+        return Timer.builder("chess.engine.search")
+                .tag("depth", depth)
+                .tag("outcome", outcome)
+                .description("Engine searches")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static int availableCores() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /** Total nodes reported by every engine search since startup. */
+    public long getNodesSearched() {
+        return nodesSearched.sum();
+    }
+
     private class StockfishEngine {
 
+        private final int id = engineIds.incrementAndGet();
         private Process engineProcess;
-        private BufferedReader reader;
         private BufferedWriter writer;
+        // Filled by a reader thread that parses stdout in place, so every read can
+        // have a deadline and info lines don't become Strings
+        private final BlockingQueue<UciParser.Message> output = new LinkedBlockingQueue<>();
+        private final UciParser parser = new UciParser();
+        // Whether the last search was cut short by its deadline (result is shallower than asked)
+        private boolean truncated;
+        // Consecutive searches that ran into their deadline
+        private int strikes;
+        // Depth of the last reported score in the last search
+        private int depthReached;
+        // Between "go" and the matching bestmove: the engine can't take commands yet
+        private boolean searching;
 
-        public StockfishEngine() throws IOException {
-            startEngine();
+        public StockfishEngine(int threads) throws IOException, InterruptedException {
+            startEngine(threads);
         }
 
-        private void startEngine() throws IOException {
+        private void startEngine(int threads) throws IOException, InterruptedException {
             // On Linux/Render: use the system Stockfish binary (installed via apt-get in
-            // Dockerfile)
+            // Dockerfile), from chess.engine.path or the STOCKFISH_PATH env var
             // On Windows (local dev): fall back to extracting the bundled stockfish.exe
             // from classpath
-            String stockfishBinaryPath = System.getenv("STOCKFISH_PATH");
+            String stockfishBinaryPath = enginePath;
 
             if (stockfishBinaryPath != null && !stockfishBinaryPath.isBlank()) {
                 // Production / Render path — use system binary directly
                 File binaryFile = new File(stockfishBinaryPath);
                 if (!binaryFile.exists() || !binaryFile.canExecute()) {
                     throw new FileNotFoundException(
-                            "Stockfish not found or not executable at STOCKFISH_PATH: " + stockfishBinaryPath);
+                            "Stockfish not found or not executable at chess.engine.path / STOCKFISH_PATH: " + stockfishBinaryPath);
                 }
                 engineProcess = new ProcessBuilder(stockfishBinaryPath)
                         .redirectErrorStream(true)
@@ -107,11 +798,32 @@ public class StockfishService {
                         .start();
             }
 
-            reader = new BufferedReader(new InputStreamReader(engineProcess.getInputStream()));
             writer = new BufferedWriter(new OutputStreamWriter(engineProcess.getOutputStream()));
+            InputStream stdout = engineProcess.getInputStream();
+            Thread.ofVirtual().name("stockfish-reader-" + id)
+                    .start(() -> parser.pump(stdout, output::offer));
+
+            try {
+                sendCommand("uci");
+                waitFor(UciParser.Type.UCIOK, System.nanoTime() + READY_TIMEOUT_NANOS);
+                sendCommand("setoption name Threads value " + threads);
+                sendCommand("setoption name Hash value " + hashMb);
+                sendCommand("isready");
+                waitFor(UciParser.Type.READYOK, System.nanoTime() + READY_TIMEOUT_NANOS);
+            } catch (IOException | InterruptedException e) {
+                close();
+                throw e;
+            }
+        }
 
-            sendCommand("uci");
-            waitFor("uciok");
+        /** Next message from the engine, or null once {@code deadline} (System.nanoTime) has passed. */
+        private UciParser.Message next(long deadline) throws IOException, InterruptedException {
+            UciParser.Message message = output.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (message != null && message.type() == UciParser.Type.EOF) {
+                output.offer(message);
+                throw new IOException("Engine " + id + " exited");
+            }
+            return message;
         }
 
         private void sendCommand(String command) throws IOException {
@@ -119,96 +831,193 @@ public class StockfishService {
             writer.flush();
         }
 
-        private void waitFor(String text) throws IOException {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains(text))
-                    break;
-            }
+        private void waitFor(UciParser.Type type, long deadline) throws IOException, InterruptedException {
+            UciParser.Message message;
+            do {
+                message = next(deadline);
+                if (message == null) {
+                    kill();
+                    throw new IOException("Engine " + id + " did not answer with " + type + " in time");
+                }
+            } while (message.type() != type);
         }
 
-        public int evaluatePosition(String fen, int depth) throws IOException {
-            sendCommand("position fen " + fen);
-            sendCommand("go depth " + depth);
+        boolean isAlive() {
+            return engineProcess.isAlive();
+        }
 
-            String line;
-            int evaluation = 0;
+        /** Health check: the engine answers {@code isready} promptly. */
+        boolean isReady() {
+            try {
+                sendCommand("isready");
+                waitFor(UciParser.Type.READYOK, System.nanoTime() + READY_TIMEOUT_NANOS);
+                return true;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return isAlive();
+            }
+        }
 
-            while ((line = reader.readLine()) != null) {
+        public EvalResult evaluateWithBestMove(String fen, SearchLimit limit)
+                throws IOException, InterruptedException {
+            return search("position fen " + fen, limit);
+        }
 
-                if (line.contains("score cp") || line.contains("score mate")) {
-                    String[] parts = line.split(" ");
-                    for (int i = 0; i < parts.length - 1; i++) {
-                        if (parts[i].equals("score")) {
-                            if (parts[i + 1].equals("cp")) {
-                                evaluation = Integer.parseInt(parts[i + 2]);
-                            } else if (parts[i + 1].equals("mate")) {
-                                int mateIn = Integer.parseInt(parts[i + 2]);
-                                evaluation = mateIn > 0 ? 10000 - mateIn : -10000 - mateIn;
-                            }
-                        }
-                    }
-                }
+        /**
+         * Searches to {@code maxDepth} or for {@code maxTimeMs}, whichever ends
+         * first, handing {@code progress} an INFO message per completed depth.
+         */
+        public EvalResult evaluateLive(String fen, int maxDepth, long maxTimeMs,
+                Consumer<UciParser.Message> progress) throws IOException, InterruptedException {
+            return search("position fen " + fen, "go depth " + maxDepth + " movetime " + maxTimeMs, "live",
+                    progress);
+        }
 
-                if (line.startsWith("bestmove")) {
-                    break;
-                }
+        /**
+         * Clears the engine's hash and history before the plies of a new game, so
+         * results don't depend on whatever this engine searched before.
+         */
+        public void newGame() throws IOException, InterruptedException {
+            sendCommand("ucinewgame");
+            sendCommand("isready");
+            waitFor(UciParser.Type.READYOK, System.nanoTime() + READY_TIMEOUT_NANOS);
+        }
+
+        /**
+         * Searches the position reached after the given moves from the start
+         * position (or {@code startFen} when not null). Used for consecutive plies
+         * of one game so the transposition table filled by the previous ply is
+         * reused.
+         */
+        public EvalResult evaluateMoves(String startFen, List<String> uciMoves, SearchLimit limit)
+                throws IOException, InterruptedException {
+            String position = startFen != null ? "position fen " + startFen : "position startpos";
+            if (uciMoves.isEmpty()) {
+                return search(position, limit);
             }
+            return search(position + " moves " + String.join(" ", uciMoves), limit);
+        }
 
-            return evaluation;
+        private EvalResult search(String positionCommand, SearchLimit limit)
+                throws IOException, InterruptedException {
+            return search(positionCommand, limit.goCommand(),
+                    limit.moveTimeMs() > 0 ? "movetime" : String.valueOf(limit.depth()), null);
         }
 
-        public EvalResult evaluateWithBestMove(String fen, int depth) throws IOException {
-            sendCommand("position fen " + fen);
-            sendCommand("go depth " + depth);
+        /** Runs one search, recorded in the {@code chess.engine.search} timer. */
+        private EvalResult search(String positionCommand, String goCommand, String timerDepth,
+                Consumer<UciParser.Message> progress) throws IOException, InterruptedException {
+            long start = System.nanoTime();
+            String outcome = "failed";
+            try {
+                EvalResult result = runSearch(positionCommand, goCommand, progress);
+                outcome = truncated ? "truncated" : "complete";
+                return result;
+            } catch (InterruptedException e) {
+                outcome = "cancelled";
+                throw e;
+            } finally {
+                searchTimer(timerDepth, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
 
-            String line;
-            int evaluation = 0;
-            String bestMove = null;
+        /**
+         * Past the search deadline the engine is sent {@code stop} and its best
+         * move so far is returned (flagged as {@link #truncated}); if even that
+         * does not arrive, it is killed. With {@code progress} every completed
+         * depth is handed to it on the way; if it throws, the search is
+         * abandoned like an interrupted one.
+         */
+        private EvalResult runSearch(String positionCommand, String goCommand,
+                Consumer<UciParser.Message> progress) throws IOException, InterruptedException {
+            parser.reportProgress(progress != null);
+            sendCommand(positionCommand);
+            sendCommand(goCommand);
 
-            while ((line = reader.readLine()) != null) {
+            UciParser.Message message;
+            long deadline = System.nanoTime() + searchTimeoutNanos;
+            truncated = false;
+            depthReached = 0;
+            searching = true;
 
-                if (line.contains("score cp") || line.contains("score mate")) {
-                    String[] parts = line.split(" ");
-                    for (int i = 0; i < parts.length - 1; i++) {
-                        if (parts[i].equals("score")) {
-                            if (parts[i + 1].equals("cp")) {
-                                evaluation = Integer.parseInt(parts[i + 2]);
-                            } else if (parts[i + 1].equals("mate")) {
-                                int mateIn = Integer.parseInt(parts[i + 2]);
-                                evaluation = mateIn > 0 ? 10000 - mateIn : -10000 - mateIn;
-                            }
-                        }
+            while (true) {
+                try {
+                    message = next(deadline);
+                    if (message != null && message.type() == UciParser.Type.INFO && progress != null) {
+                        progress.accept(message);
                     }
+                } catch (InterruptedException | RuntimeException e) {
+                    abandonSearch();
+                    throw e;
                 }
-
-                if (line.startsWith("bestmove")) {
-                    String[] tokens = line.split(" ");
-                    if (tokens.length >= 2 && !tokens[1].equals("(none)")) {
-                        bestMove = tokens[1]; // e.g. "e2e4"
+                if (message == null) {
+                    if (truncated) {
+                        kill();
+                        throw new IOException("Engine " + id + " ignored stop; killed");
                     }
+                    timeouts.increment();
+                    strikes++;
+                    truncated = true;
+                    sendCommand("stop");
+                    deadline = System.nanoTime() + STOP_GRACE_NANOS;
+                    continue;
+                }
+                // Stray readyok answers from an earlier, abandoned exchange are skipped
+                if (message.type() == UciParser.Type.BESTMOVE) {
                     break;
                 }
             }
 
-            return new EvalResult(evaluation, bestMove);
+            searching = false;
+            depthReached = message.depth();
+            if (!truncated) {
+                strikes = 0;
+            }
+            nodesSearched.add(message.nodes());
+            return truncated ? message.result().asTruncated() : message.result();
+        }
+
+        /**
+         * The caller was cancelled mid-search: stop the engine and consume its
+         * bestmove so it can go back to the pool, or kill it if it won't stop.
+         */
+        private void abandonSearch() {
+            try {
+                sendCommand("stop");
+                long deadline = System.nanoTime() + STOP_GRACE_NANOS;
+                UciParser.Message message;
+                while ((message = next(deadline)) != null) {
+                    if (message.type() == UciParser.Type.BESTMOVE) {
+                        searching = false;
+                        return;
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // Fall through to kill
+            }
+            kill();
+        }
+
+        private void kill() {
+            kills.increment();
+            log.warn("Killing unresponsive engine {}", id);
+            engineProcess.destroyForcibly();
         }
 
         public void close() {
             try {
-                if (writer != null) {
+                if (writer != null && engineProcess.isAlive()) {
                     sendCommand("quit");
                     writer.close();
                 }
-                if (reader != null) {
-                    reader.close();
-                }
-                if (engineProcess != null) {
-                    engineProcess.destroy();
-                }
             } catch (IOException e) {
                 // Ignore
             }
+            if (engineProcess != null) {
+                engineProcess.destroy();
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.chess.analysis.service;
+
+/**
+ * Splits a wall-clock deadline over a range of plies that one engine searches
+ * one after another. Each ply gets the time still left, minus a small
+ * per-search overhead, in proportion to its weight among the plies still to
+ * go. Overruns, cache hits and waits for an engine early in the range are
+ * therefore absorbed by the later plies, and the range ends near the deadline
+ * either way. Plies that cannot get an engine before the deadline are not
+ * searched at all.
+ */
+final class TimeBudget {
+
+    /** A normal position. */
+    static final double NORMAL = 1.0;
+    /** Opening theory: only needs a sanity check. */
+    static final double BOOK = 0.2;
+    /** Zero or one legal move: nothing to choose between. */
+    static final double FORCED = 0.1;
+
+    /** Once the last score is beyond this, the game is decided and plies get a fraction of their share. */
+    static final int DECIDED_CP = 800;
+    static final double DECIDED_FACTOR = 0.3;
+
+    static final long MIN_MOVETIME_MS = 10;
+    // Command round trip and bestmove latency on top of the movetime
+    static final long OVERHEAD_MS = 5;
+
+    private final double[] weightsFrom; // weightsFrom[ply] = sum of weights[ply..toPly]
+    private final double[] weights;
+    private final long deadlineNanos;
+    private final int cacheDepth;
+    private boolean decided;
+
+    /**
+     * @param weights    per-ply weights of the whole game
+     * @param toPly      last ply (inclusive) of the range this budget covers
+     * @param cacheDepth cached results at least this deep are used instead of searching
+     */
+    TimeBudget(double[] weights, int toPly, long deadlineNanos, int cacheDepth) {
+        this.weights = weights;
+        this.weightsFrom = new double[toPly + 2];
+        for (int ply = toPly; ply >= 0; ply--) {
+            weightsFrom[ply] = weightsFrom[ply + 1] + weights[ply];
+        }
+        this.deadlineNanos = deadlineNanos;
+        this.cacheDepth = cacheDepth;
+    }
+
+    StockfishService.SearchLimit limitFor(int ply) {
+        return limitFor(ply, System.nanoTime());
+    }
+
+    StockfishService.SearchLimit limitFor(int ply, long nowNanos) {
+        int pliesLeft = weightsFrom.length - 1 - ply;
+        long availableMs = (deadlineNanos - nowNanos) / 1_000_000 - OVERHEAD_MS * pliesLeft;
+        double share = availableMs * weights[ply] / weightsFrom[ply];
+        if (decided) {
+            share *= DECIDED_FACTOR;
+        }
+        return StockfishService.SearchLimit.forTime(Math.max(MIN_MOVETIME_MS, (long) share), cacheDepth)
+                .until(deadlineNanos);
+    }
+
+    /** Feeds back a raw (side to move) result so decided positions get less time. */
+    void onResult(StockfishService.EvalResult raw) {
+        decided = Math.abs(raw.evaluation()) >= DECIDED_CP;
+    }
+}
@@ -0,0 +1,35 @@
+package com.chess.analysis.service;
+
+/**
+ * Packs UCI moves such as "e7e8q" into 16 bits: from(6) | to(6) |
+ * promotion(3), with 0 meaning "no move". Used wherever moves are stored in
+ * bulk (cache slots, the opening trie).
+ */
+final class UciMoves {
+
+    private UciMoves() {
+    }
+
+    static short encode(String uci) {
+        if (uci == null || uci.length() < 4) {
+            return 0;
+        }
+        int from = (uci.charAt(0) - 'a') + (uci.charAt(1) - '1') * 8;
+        int to = (uci.charAt(2) - 'a') + (uci.charAt(3) - '1') * 8;
+        int promotion = uci.length() > 4 ? "nbrq".indexOf(uci.charAt(4)) + 1 : 0;
+        return (short) (from | to << 6 | promotion << 12);
+    }
+
+    static String decode(short packed) {
+        int from = packed & 0x3f;
+        int to = (packed >>> 6) & 0x3f;
+        int promotion = (packed >>> 12) & 0x7;
+        StringBuilder sb = new StringBuilder(5)
+                .append((char) ('a' + (from & 7))).append((char) ('1' + (from >>> 3)))
+                .append((char) ('a' + (to & 7))).append((char) ('1' + (to >>> 3)));
+        if (promotion > 0) {
+            sb.append("nbrq".charAt(promotion - 1));
+        }
+        return sb.toString();
+    }
+}
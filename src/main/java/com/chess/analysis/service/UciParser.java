@@ -0,0 +1,271 @@
+package com.chess.analysis.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Byte-level parser for a UCI engine's stdout. Lines are scanned in place in a
+ * reusable buffer; {@code info} lines only update primitive fields and a copy
+ * of the PV bytes, so engine chatter creates no objects. A {@link Message} is
+ * produced only for the lines a caller waits on: {@code uciok},
+ * {@code readyok} and {@code bestmove}, the last one carrying the search's
+ * final score, depth, node count and PV. While {@link #reportProgress} is on,
+ * the first exact score of every new depth also produces an {@code INFO}
+ * message, for searches whose progress is streamed.
+ * <p>
+ * Not thread-safe: one parser per engine, driven by that engine's reader
+ * thread; only the progress switch may be flipped from another thread.
+ */
+final class UciParser {
+
+    enum Type {
+        UCIOK, READYOK, INFO, BESTMOVE, EOF
+    }
+
+    /** One event from the engine; INFO and BESTMOVE have a result. */
+    record Message(Type type, StockfishService.EvalResult result, int depth, long nodes) {
+
+        static final Message UCIOK = new Message(Type.UCIOK, null, 0, 0);
+        static final Message READYOK = new Message(Type.READYOK, null, 0, 0);
+        static final Message EOF = new Message(Type.EOF, null, 0, 0);
+    }
+
+    private static final byte[] INFO = ascii("info");
+    private static final byte[] BESTMOVE = ascii("bestmove");
+    private static final byte[] READYOK = ascii("readyok");
+    private static final byte[] UCIOK = ascii("uciok");
+    private static final byte[] DEPTH = ascii("depth");
+    private static final byte[] SCORE = ascii("score");
+    private static final byte[] CP = ascii("cp");
+    private static final byte[] MATE = ascii("mate");
+    private static final byte[] LOWERBOUND = ascii("lowerbound");
+    private static final byte[] UPPERBOUND = ascii("upperbound");
+    private static final byte[] NODES = ascii("nodes");
+    private static final byte[] PV = ascii("pv");
+    private static final byte[] NONE = ascii("(none)");
+
+    // State of the current search, from the last info line that had a score
+    private int depth;
+    private int score;
+    private long nodes;
+    private byte[] pv = new byte[256];
+    private int pvLength;
+    // Deepest depth already sent as INFO in the current search
+    private int reportedDepth;
+    private volatile boolean progress;
+
+    /** Turns INFO messages on or off, for the searches that follow. */
+    void reportProgress(boolean progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Reads {@code in} until end of stream, handing each message to
+     * {@code sink}. Returns normally at end of stream (after emitting
+     * {@link Message#EOF}); read errors are treated as end of stream.
+     */
+    void pump(InputStream in, Consumer<Message> sink) {
+        byte[] buffer = new byte[8192];
+        int start = 0;
+        int end = 0;
+        try {
+            while (true) {
+                if (end == buffer.length) {
+                    if (start > 0) {
+                        System.arraycopy(buffer, start, buffer, 0, end - start);
+                        end -= start;
+                        start = 0;
+                    } else {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2); // a line longer than the buffer
+                    }
+                }
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    break;
+                }
+                int scanFrom = end;
+                end += read;
+                for (int i = scanFrom; i < end; i++) {
+                    if (buffer[i] == '\n') {
+                        Message message = parseLine(buffer, start, i);
+                        if (message != null) {
+                            sink.accept(message);
+                        }
+                        start = i + 1;
+                    }
+                }
+                if (start == end) {
+                    start = 0;
+                    end = 0;
+                }
+            }
+        } catch (IOException e) {
+            // Stream closed: the process exited or was killed
+        }
+        sink.accept(Message.EOF);
+    }
+
+    /** Parses {@code line[from, to)} (without the newline); returns a message or null. */
+    Message parseLine(byte[] line, int from, int to) {
+        if (to > from && line[to - 1] == '\r') {
+            to--;
+        }
+        int tokenEnd = tokenEnd(line, from, to);
+        if (equals(line, from, tokenEnd, INFO)) {
+            return parseInfo(line, tokenEnd, to);
+        }
+        if (equals(line, from, tokenEnd, BESTMOVE)) {
+            return bestMove(line, tokenEnd, to);
+        }
+        if (equals(line, from, tokenEnd, READYOK)) {
+            return Message.READYOK;
+        }
+        if (equals(line, from, tokenEnd, UCIOK)) {
+            return Message.UCIOK;
+        }
+        return null;
+    }
+
+    private Message parseInfo(byte[] line, int i, int to) {
+        int lineDepth = -1;
+        int lineScore = 0;
+        boolean hasScore = false;
+        boolean bound = false;
+        long lineNodes = -1;
+        int pvFrom = -1;
+
+        while (i < to) {
+            i = skipSpaces(line, i, to);
+            int end = tokenEnd(line, i, to);
+            if (equals(line, i, end, DEPTH)) {
+                i = skipSpaces(line, end, to);
+                end = tokenEnd(line, i, to);
+                lineDepth = (int) parseLong(line, i, end);
+            } else if (equals(line, i, end, SCORE)) {
+                i = skipSpaces(line, end, to);
+                end = tokenEnd(line, i, to);
+                boolean mate = equals(line, i, end, MATE);
+                if (mate || equals(line, i, end, CP)) {
+                    i = skipSpaces(line, end, to);
+                    end = tokenEnd(line, i, to);
+                    int value = (int) parseLong(line, i, end);
+                    lineScore = mate ? (value > 0 ? 10000 - value : -10000 - value) : value;
+                    hasScore = true;
+                }
+            } else if (equals(line, i, end, LOWERBOUND) || equals(line, i, end, UPPERBOUND)) {
+                bound = true;
+            } else if (equals(line, i, end, NODES)) {
+                i = skipSpaces(line, end, to);
+                end = tokenEnd(line, i, to);
+                lineNodes = parseLong(line, i, end);
+            } else if (equals(line, i, end, PV)) {
+                // The PV runs to the end of the info line
+                pvFrom = skipSpaces(line, end, to);
+                break;
+            }
+            i = end;
+        }
+
+        // Lines without a score (currmove, string, ...) don't describe a search result
+        if (!hasScore) {
+            return null;
+        }
+        score = lineScore;
+        if (lineDepth >= 0) {
+            depth = lineDepth;
+        }
+        if (lineNodes >= 0) {
+            nodes = lineNodes;
+        }
+        if (pvFrom >= 0) {
+            int length = to - pvFrom;
+            if (length > pv.length) {
+                pv = Arrays.copyOf(pv, Math.max(length, pv.length * 2));
+            }
+            System.arraycopy(line, pvFrom, pv, 0, length);
+            pvLength = length;
+        }
+        // A bound is only a step of the aspiration search; the depth is reported with its exact score
+        if (!progress || bound || depth <= reportedDepth) {
+            return null;
+        }
+        reportedDepth = depth;
+        List<String> moves = pvMoves();
+        return new Message(Type.INFO,
+                new StockfishService.EvalResult(score, moves.isEmpty() ? null : moves.getFirst(), moves), depth, nodes);
+    }
+
+    /** Builds the search result (the only allocation per search) and resets for the next one. */
+    private Message bestMove(byte[] line, int i, int to) {
+        i = skipSpaces(line, i, to);
+        int end = tokenEnd(line, i, to);
+        String move = end > i && !equals(line, i, end, NONE) ? ascii(line, i, end) : null;
+
+        Message message = new Message(Type.BESTMOVE,
+                new StockfishService.EvalResult(score, move, pvMoves()), depth, nodes);
+
+        depth = 0;
+        score = 0;
+        nodes = 0;
+        pvLength = 0;
+        reportedDepth = 0;
+        return message;
+    }
+
+    private List<String> pvMoves() {
+        List<String> moves = new ArrayList<>();
+        for (int p = 0; p < pvLength;) {
+            p = skipSpaces(pv, p, pvLength);
+            int moveEnd = tokenEnd(pv, p, pvLength);
+            if (moveEnd > p) {
+                moves.add(ascii(pv, p, moveEnd));
+            }
+            p = moveEnd;
+        }
+        return List.copyOf(moves);
+    }
+
+    private static int skipSpaces(byte[] bytes, int i, int to) {
+        while (i < to && (bytes[i] == ' ' || bytes[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int tokenEnd(byte[] bytes, int i, int to) {
+        while (i < to && bytes[i] != ' ' && bytes[i] != '\t') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean equals(byte[] bytes, int from, int to, byte[] token) {
+        return Arrays.equals(bytes, from, to, token, 0, token.length);
+    }
+
+    private static long parseLong(byte[] bytes, int from, int to) {
+        boolean negative = from < to && bytes[from] == '-';
+        long value = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static String ascii(byte[] bytes, int from, int to) {
+        return new String(bytes, from, to - from, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,88 @@
+package com.chess.analysis.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * 64-bit Zobrist keys computed straight from FEN text. Only the first four
+ * fields (placement, side to move, castling, en passant) contribute, so the
+ * same position reached with different move counters shares a key.
+ * <p>
+ * The random tables come from a fixed seed: keys written into build-time
+ * artifacts (the opening book index) stay valid at runtime.
+ */
+final class ZobristKeys {
+
+    private static final String PIECES = "PNBRQKpnbrqk";
+    private static final long[] PIECE_SQUARE = new long[PIECES.length() * 64];
+    private static final long[] CASTLING = new long[4]; // K, Q, k, q
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EEDC4E55L);
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            PIECE_SQUARE[i] = random.nextLong();
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private ZobristKeys() {
+    }
+
+    /** Hashes a FEN without splitting it or allocating. */
+    static long ofFen(CharSequence fen) {
+        long key = 0L;
+        int n = fen.length();
+        int i = 0;
+
+        // 1. Piece placement, rank 8 first
+        int rank = 7;
+        int file = 0;
+        for (; i < n; i++) {
+            char c = fen.charAt(i);
+            if (c == ' ') {
+                break;
+            }
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else {
+                int piece = PIECES.indexOf(c);
+                if (piece >= 0 && file < 8 && rank >= 0) {
+                    key ^= PIECE_SQUARE[piece * 64 + rank * 8 + file];
+                }
+                file++;
+            }
+        }
+
+        // 2. Side to move
+        i++;
+        if (i < n && fen.charAt(i) == 'b') {
+            key ^= BLACK_TO_MOVE;
+        }
+        i += 2;
+
+        // 3. Castling rights
+        for (; i < n && fen.charAt(i) != ' '; i++) {
+            int right = "KQkq".indexOf(fen.charAt(i));
+            if (right >= 0) {
+                key ^= CASTLING[right];
+            }
+        }
+
+        // 4. En passant target file
+        i++;
+        if (i < n && fen.charAt(i) >= 'a' && fen.charAt(i) <= 'h') {
+            key ^= EN_PASSANT_FILE[fen.charAt(i) - 'a'];
+        }
+        return key;
+    }
+}
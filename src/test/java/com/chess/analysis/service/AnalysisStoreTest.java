@@ -0,0 +1,119 @@
+package com.chess.analysis.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalysisStoreTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void keysOnMovesAndSettings() {
+        AnalysisStore.Key key = AnalysisStore.key(START, List.of("e2e4", "e7e5"), "depth=14,budgetMs=0");
+
+        assertEquals(key, AnalysisStore.key(START, List.of("e2e4", "e7e5"), "depth=14,budgetMs=0"));
+        assertNotEquals(key, AnalysisStore.key(START, List.of("e2e4", "e7e6"), "depth=14,budgetMs=0"));
+        assertNotEquals(key, AnalysisStore.key(START, List.of("e2e4", "e7e5"), "depth=16,budgetMs=0"));
+        assertNotEquals(key, AnalysisStore.key(START, List.of("e2e4e7", "e5"), "depth=14,budgetMs=0"));
+    }
+
+    @Test
+    public void survivesARestart() {
+        AnalysisStore.Key key = AnalysisStore.key(START, List.of("e2e4"), "depth=14,budgetMs=0");
+        List<StockfishService.EvalResult> results = List.of(
+                new StockfishService.EvalResult(31, "e2e4", List.of("e2e4", "e7e5")),
+                new StockfishService.EvalResult(-25, "c7c5", List.of("c7c5")),
+                new StockfishService.EvalResult(0, null));
+
+        AnalysisStore store = open(DataSize.ofMegabytes(1));
+        assertNull(store.get(key));
+        store.put(key, results);
+        assertEquals(results, store.get(key));
+        store.close();
+
+        AnalysisStore reopened = open(DataSize.ofMegabytes(1));
+        assertEquals(results, reopened.get(key));
+        assertEquals(1, reopened.stats().entries());
+        reopened.close();
+    }
+
+    @Test
+    public void dropsATornLastRecord() throws Exception {
+        AnalysisStore.Key first = AnalysisStore.key(START, List.of("d2d4"), "");
+        AnalysisStore.Key second = AnalysisStore.key(START, List.of("c2c4"), "");
+        AnalysisStore store = open(DataSize.ofMegabytes(1));
+        store.put(first, game(40));
+        store.put(second, game(40));
+        store.close();
+
+        // Crash halfway through writing the second record
+        Path log = dir.resolve("analyses.log");
+        long size = Files.size(log);
+        try (var channel = Files.newByteChannel(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 10);
+        }
+
+        AnalysisStore reopened = open(DataSize.ofMegabytes(1));
+        assertEquals(game(40), reopened.get(first));
+        assertNull(reopened.get(second));
+        assertEquals(reopened.stats().liveBytes(), Files.size(log));
+        reopened.close();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedAndCompacts() {
+        AnalysisStore store = open(DataSize.ofKilobytes(16));
+        List<AnalysisStore.Key> keys = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            AnalysisStore.Key key = AnalysisStore.key(START, List.of("g" + i), "");
+            keys.add(key);
+            store.put(key, game(80));
+            store.get(keys.getFirst()); // keep the first game in use
+        }
+
+        AnalysisStore.Stats stats = store.stats();
+        assertTrue(stats.liveBytes() <= 16 * 1024, stats.toString());
+        assertTrue(stats.evictions() > 0);
+        assertTrue(stats.compactions() > 0);
+        assertTrue(stats.fileBytes() < 2 * 16 * 1024, stats.toString());
+        assertEquals(game(80), store.get(keys.getFirst()));
+        assertEquals(game(80), store.get(keys.getLast()));
+        assertNull(store.get(keys.get(1)));
+        store.close();
+    }
+
+    @Test
+    public void disabledStoreKeepsNothing() {
+        AnalysisStore store = new AnalysisStore(null, DataSize.ofBytes(0), new SimpleMeterRegistry());
+        AnalysisStore.Key key = AnalysisStore.key(START, List.of(), "");
+        store.put(key, game(1));
+
+        assertFalse(store.isEnabled());
+        assertNull(store.get(key));
+    }
+
+    private AnalysisStore open(DataSize maxSize) {
+        return new AnalysisStore(dir.toString(), maxSize, new SimpleMeterRegistry());
+    }
+
+    private static List<StockfishService.EvalResult> game(int plies) {
+        List<StockfishService.EvalResult> results = new ArrayList<>();
+        for (int i = 0; i < plies; i++) {
+            results.add(new StockfishService.EvalResult(i * 7 - 100, "e2e4", List.of("e2e4", "e7e5", "g1f3")));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,106 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.AnalysisResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChessAnalysisServiceTest {
+
+    private static final String GAME = "1. e4 e5 2. Nf3 Nc6 3. Bb5 a6 4. Ba4 Nf6 5. Qe2 h6 6. Qc4 g5 7. Qxf7# 1-0";
+
+    @TempDir
+    Path dir;
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    @AfterEach
+    public void close() throws Exception {
+        for (AutoCloseable resource : resources.reversed()) {
+            resource.close();
+        }
+    }
+
+    @Test
+    public void storesACompleteAnalysis() throws Exception {
+        AnalysisStore store = store();
+        AnalysisResponse response = analysis(new ScriptedBackend(false), store).analyzeGame(GAME);
+
+        assertTrue(response.isComplete());
+        assertEquals(1, store.stats().entries());
+    }
+
+    @Test
+    public void doesNotStoreAnAnalysisCutShortByTheSearchDeadline() throws Exception {
+        AnalysisStore store = store();
+        AnalysisResponse response = analysis(new ScriptedBackend(true), store).analyzeGame(GAME);
+
+        assertFalse(response.isComplete());
+        assertEquals(0, store.stats().entries());
+    }
+
+    private AnalysisStore store() {
+        AnalysisStore store = new AnalysisStore(dir.toString(), DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+        resources.add(store::close);
+        return store;
+    }
+
+    /** The service on a remote engine worker that serves {@code backend}. */
+    private ChessAnalysisService analysis(EngineBackend backend, AnalysisStore store) throws Exception {
+        EngineWorker worker = new EngineWorker(backend, InetAddress.getLoopbackAddress(), 0, Duration.ofSeconds(5));
+        worker.start();
+        resources.add(worker::close);
+        SimpleMeterRegistry metrics = new SimpleMeterRegistry();
+        StockfishService stockfish = new StockfishService(new EvaluationCache(1 << 10, false), metrics,
+                new EngineProperties(Duration.ofSeconds(5), Duration.ofMinutes(10), 3, 1, 1, 16, false, 12, 0, null,
+                        StockfishService.Backend.REMOTE, List.of("localhost:" + worker.port())));
+        stockfish.initPool();
+        resources.add(stockfish::destroyPool);
+        OpeningBookService openingBook = new OpeningBookService();
+        openingBook.loadOpeningBook();
+        return new ChessAnalysisService(stockfish, openingBook, store, metrics,
+                ChessAnalysisService.SchedulingMode.ORDERED, 14, Duration.ZERO, Duration.ofSeconds(60));
+    }
+
+    /** Scores every position 0 with no best move, optionally as if the deadline had stopped each search. */
+    private record ScriptedBackend(boolean truncated) implements EngineBackend {
+
+        @Override
+        public StockfishService.EvalResult evaluateWithBestMove(String fen, StockfishService.SearchLimit limit,
+                StockfishService.Lane lane) {
+            return new StockfishService.EvalResult(0, null, List.of(), truncated);
+        }
+
+        @Override
+        public void evaluateLine(String startFen, List<String> fens, List<String> uciMoves, int fromPly, int toPly,
+                IntFunction<StockfishService.SearchLimit> limits,
+                BiConsumer<Integer, StockfishService.EvalResult> onResult) {
+            for (int ply = fromPly; ply <= toPly; ply++) {
+                onResult.accept(ply, evaluateWithBestMove(fens.get(ply), limits.apply(ply),
+                        StockfishService.Lane.BATCH));
+            }
+        }
+
+        @Override
+        public int getPoolSize() {
+            return 1;
+        }
+
+        @Override
+        public int getBatchCapacity() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.AnalysisResponse;
+import com.chess.analysis.model.MoveReview;
+import com.chess.analysis.model.Opening;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactAnalysisWriterTest {
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+    private final CompactAnalysisWriter writer = new CompactAnalysisWriter(mapper);
+
+    @Test
+    public void writesMovesAsColumns() throws Exception {
+        List<MoveReview> moves = List.of(
+                new MoveReview("e2e4", 0, 30, "Book", "fen1", null, "4:59"),
+                new MoveReview("e7e5", 0, 28, "Book", "fen2", null, "4:58"),
+                new MoveReview("d1h5", 45, -17, "Inaccuracy", "fen3", "g1f3", null, List.of("g1f3", "b8c6")),
+                new MoveReview("b8c6", 0, -15, "Best", "fen4", null, "4:55"),
+                new MoveReview("f1c4", 250, -265, "Mistake", "fen5", "b1c3", "4:40"));
+        AnalysisResponse analysis = new AnalysisResponse(87.4567, moves, "Alice", "Bob", "1500", "?", "300",
+                new Opening("C20", "King's Pawn Game", 2));
+
+        JsonNode json = write(analysis);
+
+        assertEquals(CompactAnalysisWriter.VERSION, json.get("v").asInt());
+        assertEquals("Alice", json.get("white").asString());
+        assertEquals("?", json.get("blackElo").asString());
+        assertEquals(87.5, json.get("accuracy").asDouble());
+        assertEquals("C20", json.get("opening").get("eco").asString());
+        assertFalse(json.has("startFen"));
+        assertEquals(List.of("e2e4", "e7e5", "d1h5", "b8c6", "f1c4"), strings(json.get("moves")));
+        assertEquals(List.of(30, 28, -17, -15, -265), ints(json.get("evals")));
+        assertEquals(List.of(0, 0, 45, 0, 250), ints(json.get("losses")));
+        assertEquals(List.of("Book", "Inaccuracy", "Best", "Mistake"), strings(json.get("labels")));
+        assertEquals(List.of(0, 0, 1, 2, 3), ints(json.get("classes")));
+        // Only plies with an engine line, keyed by ply; a bare best move becomes a one-move line
+        assertEquals(2, json.get("lines").size());
+        assertEquals(List.of("g1f3", "b8c6"), strings(json.get("lines").get("2")));
+        assertEquals(List.of("b1c3"), strings(json.get("lines").get("4")));
+        assertTrue(json.get("clocks").get(2).isNull());
+        assertEquals("4:40", json.get("clocks").get(4).asString());
+        // Positions are left to the client to replay
+        assertFalse(json.toString().contains("fen1"));
+        assertFalse(json.has("complete"));
+    }
+
+    @Test
+    public void keepsANonStandardStartAndDropsAbsentClocks() throws Exception {
+        String start = "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1";
+        AnalysisResponse analysis = new AnalysisResponse(100, List.of(new MoveReview("e2e4", 0, 900, "Best", "f")),
+                "White", "Black", "?", "?", "10:00", null, start, false);
+
+        JsonNode json = write(analysis);
+
+        assertEquals(start, json.get("startFen").asString());
+        assertFalse(json.has("opening"));
+        assertFalse(json.has("clocks"));
+        assertEquals(0, json.get("lines").size());
+        assertFalse(json.get("complete").asBoolean());
+    }
+
+    @Test
+    public void etagFollowsGameAndSettings() {
+        String pgn = "[Event \"?\"]\n\n1. e4 e5 *\n";
+        String etag = writer.etag(pgn, "depth=14,budgetMs=0");
+
+        assertTrue(etag.startsWith("W/\""));
+        assertEquals(etag, writer.etag(pgn + "\n\n", "depth=14,budgetMs=0"));
+        assertNotEquals(etag, writer.etag(pgn, "depth=16,budgetMs=0"));
+        assertNotEquals(etag, writer.etag(pgn.replace("e5", "c5"), "depth=14,budgetMs=0"));
+    }
+
+    @Test
+    public void compactFormIsMuchSmallerThanTheFullOne() throws Exception {
+        List<MoveReview> moves = new ArrayList<>();
+        for (int ply = 0; ply < 200; ply++) {
+            moves.add(new MoveReview("e2e4", ply % 7, ply * 3 - 250, ply % 5 == 0 ? "Good" : "Best",
+                    "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4",
+                    ply % 5 == 0 ? "g1f3" : null, "1:23:45"));
+        }
+        AnalysisResponse analysis = new AnalysisResponse(91.2, moves, "White", "Black", "2100", "2050", "600+5",
+                null);
+
+        int full = mapper.writeValueAsBytes(analysis).length;
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        writer.write(analysis, compact);
+
+        assertTrue(compact.size() * 4 < full, compact.size() + " vs " + full);
+    }
+
+    private JsonNode write(AnalysisResponse analysis) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(analysis, out);
+        return mapper.readTree(out.toByteArray());
+    }
+
+    private static List<String> strings(JsonNode array) {
+        List<String> values = new ArrayList<>();
+        array.forEach(node -> values.add(node.asString()));
+        return values;
+    }
+
+    private static List<Integer> ints(JsonNode array) {
+        List<Integer> values = new ArrayList<>();
+        array.forEach(node -> values.add(node.asInt()));
+        return values;
+    }
+}
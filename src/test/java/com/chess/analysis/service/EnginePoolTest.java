@@ -0,0 +1,136 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnginePoolTest {
+
+    private static final StockfishService.Lane INTERACTIVE = StockfishService.Lane.INTERACTIVE;
+    private static final StockfishService.Lane BATCH = StockfishService.Lane.BATCH;
+
+    @Test
+    public void batchLeavesReservedEnginesIdle() throws Exception {
+        EnginePool<String> pool = new EnginePool<>(2, 1);
+        pool.release("a");
+        pool.release("b");
+
+        assertEquals("a", pool.acquire(BATCH));
+        CompletableFuture<String> secondBatch = acquireAsync(pool, BATCH);
+        assertThrows(TimeoutException.class, () -> secondBatch.get(200, TimeUnit.MILLISECONDS));
+
+        assertEquals("b", pool.acquire(INTERACTIVE));
+        pool.release("b");
+        assertThrows(TimeoutException.class, () -> secondBatch.get(200, TimeUnit.MILLISECONDS));
+
+        pool.release("a");
+        assertEquals("b", secondBatch.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void interactiveGoesBeforeWaitingBatch() throws Exception {
+        EnginePool<String> pool = new EnginePool<>(1, 0);
+        pool.release("a");
+        String held = pool.acquire(BATCH);
+
+        CompletableFuture<String> batch = acquireAsync(pool, BATCH);
+        awaitWaiting(pool, BATCH);
+        CompletableFuture<String> interactive = acquireAsync(pool, INTERACTIVE);
+        awaitWaiting(pool, INTERACTIVE);
+        assertTrue(pool.interactiveWaiting());
+
+        pool.release(held);
+
+        assertEquals("a", interactive.get(1, TimeUnit.SECONDS));
+        assertFalse(batch.isDone());
+        pool.release("a");
+        assertEquals("a", batch.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void batchGetsTheLastLiveEngineWhenTheOtherSlotIsQuarantined() throws Exception {
+        EnginePool<String> pool = new EnginePool<>(2, 1);
+        pool.release("a");
+
+        CompletableFuture<String> batch = acquireAsync(pool, BATCH);
+        awaitWaiting(pool, BATCH);
+        assertFalse(batch.isDone());
+
+        // "b" failed to restart: the reserve may not keep the only engine left
+        pool.quarantine();
+        assertEquals("a", batch.get(1, TimeUnit.SECONDS));
+        assertEquals(0, pool.reserved());
+
+        pool.release("a");
+        assertTrue(pool.unquarantine());
+        pool.release("b");
+        assertEquals(1, pool.reserved());
+        assertEquals("a", pool.acquire(BATCH));
+        CompletableFuture<String> secondBatch = acquireAsync(pool, BATCH);
+        assertThrows(TimeoutException.class, () -> secondBatch.get(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void timedAcquireGivesUpAtTheDeadline() throws Exception {
+        EnginePool<String> pool = new EnginePool<>(1, 0);
+        pool.release("a");
+        String held = pool.acquire(INTERACTIVE);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        assertNull(pool.acquire(BATCH, deadline));
+        assertTrue(System.nanoTime() - deadline >= 0);
+        assertNull(pool.acquire(INTERACTIVE, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50)));
+        assertEquals(0, pool.stats(BATCH).waiting());
+        assertFalse(pool.interactiveWaiting());
+
+        // An idle engine is handed out even past the deadline
+        pool.release(held);
+        assertEquals("a", pool.acquire(BATCH, System.nanoTime() - 1));
+    }
+
+    @Test
+    public void recordsWaitsPerLane() throws Exception {
+        EnginePool<String> pool = new EnginePool<>(1, 0);
+        pool.release("a");
+
+        pool.release(pool.acquire(INTERACTIVE));
+        pool.release(pool.acquire(INTERACTIVE));
+        pool.release(pool.acquire(BATCH));
+
+        assertEquals(2, pool.stats(INTERACTIVE).acquired());
+        assertEquals(1, pool.stats(BATCH).acquired());
+        assertEquals(0, pool.stats(BATCH).waiting());
+    }
+
+    // Each waiter gets its own thread: the common pool may have a single worker
+    private final ExecutorService waiters = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void stopWaiters() {
+        waiters.shutdownNow();
+    }
+
+    private CompletableFuture<String> acquireAsync(EnginePool<String> pool, StockfishService.Lane lane) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.acquire(lane);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, waiters);
+    }
+
+    private static void awaitWaiting(EnginePool<String> pool, StockfishService.Lane lane) throws InterruptedException {
+        for (int i = 0; i < 100 && pool.stats(lane).waiting() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, pool.stats(lane).waiting());
+    }
+}
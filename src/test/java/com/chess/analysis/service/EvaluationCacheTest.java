@@ -0,0 +1,112 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EvaluationCacheTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    public void deeperResultAnswersShallowerRequest() {
+        EvaluationCache cache = new EvaluationCache(1024, true);
+        cache.put(START, 14, new StockfishService.EvalResult(32, "e2e4"));
+
+        StockfishService.EvalResult hit = cache.get(START, 10);
+        assertNotNull(hit);
+        assertEquals(32, hit.evaluation());
+        assertEquals("e2e4", hit.bestMove());
+        assertNull(cache.get(START, 18));
+
+        EvaluationCache.Stats stats = cache.stats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    public void moveCountersDoNotAffectKey() {
+        EvaluationCache cache = new EvaluationCache(1024, false);
+        cache.put(START, 12, new StockfishService.EvalResult(20, "d2d4"));
+
+        assertNotNull(cache.get("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 7 42", 12));
+        assertNull(cache.get("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1", 12));
+    }
+
+    @Test
+    public void clearDropsEntries() {
+        EvaluationCache cache = new EvaluationCache(1024, true);
+        cache.put(START, 14, new StockfishService.EvalResult(32, "e2e4"));
+        cache.clear();
+
+        assertNull(cache.get(START, 1));
+        assertEquals(0, cache.stats().size());
+        cache.put(START, 8, new StockfishService.EvalResult(50, "g1f3"));
+        assertEquals(1, cache.stats().size());
+    }
+
+    @Test
+    public void shallowerSearchDoesNotOverwriteDeeperEntry() {
+        EvaluationCache cache = new EvaluationCache(1024, true);
+        cache.put(START, 14, new StockfishService.EvalResult(32, "e2e4"));
+        cache.put(START, 8, new StockfishService.EvalResult(50, "g1f3"));
+
+        assertEquals("e2e4", cache.get(START, 14).bestMove());
+    }
+
+    @Test
+    public void principalVariationIsKeptUpToSlotCapacity() {
+        EvaluationCache cache = new EvaluationCache(1024, true);
+        List<String> pv = List.of("e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "b5a4", "g8f6", "e1g1");
+        cache.put(START, 14, new StockfishService.EvalResult(35, "e2e4", pv));
+
+        StockfishService.EvalResult hit = cache.get(START, 14);
+        assertEquals("e2e4", hit.bestMove());
+        assertEquals(pv.subList(0, 7), hit.pv());
+    }
+
+    @Test
+    public void fullBucketsEvictInsteadOfGrowing() {
+        EvaluationCache cache = new EvaluationCache(16, true);
+        for (int i = 0; i < 200; i++) {
+            cache.put(singlePiece("KQRBNPkqrbnp".charAt(i % 12), i / 12), 10, new StockfishService.EvalResult(i, null));
+        }
+
+        EvaluationCache.Stats stats = cache.stats();
+        assertEquals(16, stats.capacity());
+        assertTrue(stats.size() <= 16);
+        assertEquals(200, stats.size() + stats.evictions());
+    }
+
+    @Test
+    public void movesRoundTripThroughPackedForm() {
+        for (String uci : new String[] { "e2e4", "a7a8q", "h2h1n", "e1g1", "b7c8r" }) {
+            assertEquals(uci, UciMoves.decode(UciMoves.encode(uci)));
+        }
+    }
+
+    /** FEN of an otherwise empty board with one piece on square index 0..63. */
+    private static String singlePiece(char piece, int square) {
+        StringBuilder placement = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            int file = square / 8 == rank ? square % 8 : -1;
+            if (file < 0) {
+                placement.append('8');
+            } else {
+                if (file > 0) {
+                    placement.append(file);
+                }
+                placement.append(piece);
+                if (file < 7) {
+                    placement.append(7 - file);
+                }
+            }
+            if (rank > 0) {
+                placement.append('/');
+            }
+        }
+        return placement + " w - - 0 1";
+    }
+}
@@ -0,0 +1,56 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningBookEvaluatorTest {
+
+    private static final String TSV = """
+            eco\tname\tpgn
+            C20\tKing's Pawn Game\t1. e4 e5
+            C60\tRuy Lopez\t1. e4 e5 2. Nf3 Nc6 3. Bb5
+            """;
+
+    @Test
+    public void collectsEachBookPositionOnce() throws Exception {
+        List<Reader> sources = List.of(new StringReader(TSV));
+        Map<Long, String> positions = OpeningBookEvaluator.positions(sources);
+
+        // Start, e4, e5, Nf3, Nc6, Bb5: the shared prefix counts once
+        assertEquals(6, positions.size());
+        assertEquals(OpeningBookCompiler.compile(List.of(new StringReader(TSV))).bookKeys().length, positions.size());
+    }
+
+    @Test
+    public void roundTripsAndLooksUpByPosition() throws Exception {
+        List<String> fens = PgnParser.parse("1. e4 e5 *").fens();
+        long[] keys = fens.stream().mapToLong(ZobristKeys::ofFen).sorted().toArray();
+        short[] evaluations = new short[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            evaluations[i] = (short) (10 * (i + 1));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OpeningBookEvaluator.write(new OpeningBookEvaluator.Table(20, keys, evaluations), out);
+
+        OpeningBookEvaluator.Table table = OpeningBookEvaluator.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(20, table.depth());
+        assertEquals(3, table.size());
+        for (String fen : fens) {
+            StockfishService.EvalResult result = table.lookup(fen);
+            int i = Arrays.binarySearch(keys, ZobristKeys.ofFen(fen));
+            assertEquals(evaluations[i], result.evaluation());
+            assertNull(result.bestMove());
+        }
+        assertNull(table.lookup(PgnParser.parse("1. d4 *").fens().getLast()));
+    }
+}
@@ -0,0 +1,85 @@
+package com.chess.analysis.service;
+
+import com.chess.analysis.model.Opening;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpeningTrieTest {
+
+    private static final String TSV = """
+            eco\tname\tpgn
+            C20\tKing's Pawn Game\t1. e4 e5
+            C60\tRuy Lopez\t1. e4 e5 2. Nf3 Nc6 3. Bb5
+            C65\tRuy Lopez: Berlin Defense\t1. e4 e5 2. Nf3 Nc6 3. Bb5 Nf6
+            C44\tKing's Pawn Game: Tayler Opening\t1. e4 e5 2. Nf3 Nc6 3. Be2
+            """;
+
+    private static OpeningTrie trie() throws Exception {
+        List<Reader> sources = List.of(new StringReader(TSV));
+        return new OpeningTrie(OpeningBookCompiler.compile(sources).lines());
+    }
+
+    @Test
+    public void matchesDeepestNamedLine() throws Exception {
+        PgnParser.ParsedGame game = PgnParser.parse("1. e4 e5 2. Nf3 Nc6 3. Bb5 Nf6 4. O-O Nxe4 *");
+
+        Opening opening = trie().classify(game.uciMoves(), game.fens());
+
+        assertEquals("C65", opening.getEco());
+        assertEquals("Ruy Lopez: Berlin Defense", opening.getName());
+        assertEquals(6, opening.getPlies());
+    }
+
+    @Test
+    public void keepsLastNamedLineWhenGameLeavesTheory() throws Exception {
+        PgnParser.ParsedGame game = PgnParser.parse("1. e4 e5 2. Nf3 Nc6 3. Bc4 *");
+
+        Opening opening = trie().classify(game.uciMoves(), game.fens());
+
+        assertEquals("C20", opening.getEco());
+        assertEquals(2, opening.getPlies());
+    }
+
+    @Test
+    public void findsTranspositionsByPosition() throws Exception {
+        PgnParser.ParsedGame game = PgnParser.parse("1. Nf3 Nc6 2. e4 e5 3. Bb5 *");
+
+        Opening opening = trie().classify(game.uciMoves(), game.fens());
+
+        assertEquals("C60", opening.getEco());
+        assertEquals(5, opening.getPlies());
+    }
+
+    @Test
+    public void returnsNullOutsideTheBook() throws Exception {
+        PgnParser.ParsedGame game = PgnParser.parse("1. h4 *");
+
+        assertNull(trie().classify(game.uciMoves(), game.fens()));
+    }
+
+    @Test
+    public void namedLinesSurviveBinaryRoundTrip() throws Exception {
+        List<OpeningBookCompiler.OpeningLine> lines =
+                OpeningBookCompiler.compile(List.of(new StringReader(TSV))).lines();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OpeningBookCompiler.writeLines(lines, out);
+
+        List<OpeningBookCompiler.OpeningLine> read =
+                OpeningBookCompiler.readLines(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(lines.size(), read.size());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(lines.get(i).eco(), read.get(i).eco());
+            assertEquals(lines.get(i).name(), read.get(i).name());
+            assertEquals(lines.get(i).positionKey(), read.get(i).positionKey());
+            assertArrayEquals(lines.get(i).moves(), read.get(i).moves());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PgnGameReaderTest {
+
+    @Test
+    public void splitsGamesAtNextTagSection() throws Exception {
+        String pgn = """
+                [Event "One"]
+                [White "A"]
+
+                1. e4 e5 2. Nf3 Nc6 1-0
+
+                [Event "Two"]
+
+                1. d4 { a comment
+                [%clk 0:04:59] } d5 0-1
+                [Event "Three"]
+                1. c4 *
+                """;
+
+        try (PgnGameReader reader = new PgnGameReader(new StringReader(pgn))) {
+            String first = reader.nextGame();
+            assertTrue(first.startsWith("[Event \"One\"]"));
+            assertTrue(first.contains("Nc6 1-0"));
+
+            String second = reader.nextGame();
+            assertTrue(second.startsWith("[Event \"Two\"]"));
+            assertTrue(second.contains("[%clk 0:04:59] } d5 0-1"));
+
+            String third = reader.nextGame();
+            assertTrue(third.startsWith("[Event \"Three\"]"));
+
+            assertNull(reader.nextGame());
+        }
+    }
+
+    @Test
+    public void trailingTagsWithoutMovesAreIgnored() throws Exception {
+        try (PgnGameReader reader = new PgnGameReader(new StringReader("1. e4 *\n\n[Event \"Empty\"]\n"))) {
+            assertEquals("1. e4 *\n\n", reader.nextGame());
+            assertNull(reader.nextGame());
+        }
+    }
+}
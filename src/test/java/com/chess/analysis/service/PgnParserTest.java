@@ -0,0 +1,68 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PgnParserTest {
+
+    @Test
+    public void parsesHeadersMovesAndClocksInOnePass() {
+        String pgn = """
+                [Event "Live Chess"]
+                [White "alice"]
+                [Black "bob"]
+                [WhiteElo "1520"]
+                [BlackElo "1488"]
+                [TimeControl "300"]
+
+                1. e4 {[%clk 0:04:58]} 1... e5 {[%clk 0:04:57]} 2. Nf3 $1 {[%clk 0:04:50]}
+                (2. f4 exf4 {gambit}) 2... Nc6 {[%clk 0:04:41]} 3. Bb5 a6 4. O-O 1-0
+                """;
+
+        PgnParser.ParsedGame game = PgnParser.parse(pgn);
+
+        assertEquals("alice", game.header("White", "White"));
+        assertEquals("1488", game.header("BlackElo", "?"));
+        assertEquals("White", game.header("Round", "White"));
+        assertEquals(List.of("e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "e1g1"), game.uciMoves());
+        assertEquals(List.of(true, false, true, false, true, false, true), game.whiteToMove());
+        assertEquals(game.plies() + 1, game.fens().size());
+        assertTrue(game.fens().getFirst().startsWith("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w"));
+        assertEquals("04:58", game.clockTimes().get(0));
+        assertEquals("04:41", game.clockTimes().get(3));
+        assertNull(game.clockTimes().get(4));
+    }
+
+    @Test
+    public void resolvesDisambiguationAndPromotion() {
+        PgnParser.ParsedGame game = PgnParser.parse(
+                "[FEN \"4k3/P7/8/8/8/8/8/R3K2R w KQ - 0 1\"]\n1. a8=Q+ Kd7 2. Rad1+ Ke7 3. Rhf1 *");
+
+        assertEquals("4k3/P7/8/8/8/8/8/R3K2R w KQ - 0 1", game.startFen());
+        assertEquals(List.of("a7a8q", "e8d7", "a1d1", "d7e7", "h1f1"), game.uciMoves());
+    }
+
+    @Test
+    public void stopsAtTheNextGame() {
+        PgnParser.ParsedGame game = PgnParser.parse("1. d4 d5 1/2-1/2\n\n[Event \"Next\"]\n1. e4 *");
+
+        assertEquals(List.of("d2d4", "d7d5"), game.uciMoves());
+    }
+
+    @Test
+    public void skipsStandaloneAnnotationGlyphs() {
+        PgnParser.ParsedGame game = PgnParser.parse(
+                "1. e4 ! e5 ?! 2. Nf3 $1 Nc6 !! 3. Bb5$14 a6 += 4. Ba4 \u00b1 Nf6 N 5. O-O ... Be7 +/- *");
+
+        assertEquals(List.of("e2e4", "e7e5", "g1f3", "b8c6", "f1b5", "a7a6", "b5a4", "g8f6", "e1g1", "f8e7"),
+                game.uciMoves());
+    }
+
+    @Test
+    public void rejectsIllegalMoves() {
+        assertThrows(IllegalArgumentException.class, () -> PgnParser.parse("1. e4 e5 2. Ke3 *"));
+    }
+}
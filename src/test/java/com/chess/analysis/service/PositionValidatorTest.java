@@ -0,0 +1,44 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PositionValidatorTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    public void acceptsLegalPositions() {
+        assertEquals(START, PositionValidator.checkFen("  " + START + " "));
+        PositionValidator.checkFen("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e6 0 2");
+        PositionValidator.checkFen("4k3/8/8/8/8/8/4P3/4K3 b - -");
+    }
+
+    @Test
+    public void refusesInjectedCommandsAndBrokenPositions() {
+        List<String> bad = List.of(
+                START + "\nquit",
+                START.replace(' ', '\t'),
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbq1bnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQ - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "P3k3/8/8/8/8/8/8/4K3 w - - 0 1",
+                // Black to move can take the white king
+                "4k3/8/8/8/8/8/3q4/4K3 b - - 0 1",
+                "");
+        for (String fen : bad) {
+            assertThrows(IllegalArgumentException.class, () -> PositionValidator.checkFen(fen), fen);
+        }
+    }
+
+    @Test
+    public void checksUciMoves() {
+        PositionValidator.checkUciMoves(List.of("e2e4", "e7e5", "e1g1", "a7a8q"));
+        assertThrows(IllegalArgumentException.class, () -> PositionValidator.checkUciMoves(List.of("e2e4\ngo")));
+        assertThrows(IllegalArgumentException.class, () -> PositionValidator.checkUciMoves(List.of("Nf3")));
+    }
+}
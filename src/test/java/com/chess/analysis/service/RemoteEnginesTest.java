@@ -0,0 +1,261 @@
+package com.chess.analysis.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RemoteEnginesTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private final List<EngineWorker> workers = new ArrayList<>();
+
+    @AfterEach
+    public void stopWorkers() {
+        workers.forEach(EngineWorker::close);
+    }
+
+    @Test
+    public void spreadsConcurrentSearchesByLoad() throws Exception {
+        // Every search waits until six are running at once
+        CountDownLatch allRunning = new CountDownLatch(6);
+        List<FakeBackend> backends = List.of(new FakeBackend("a", allRunning), new FakeBackend("b", allRunning),
+                new FakeBackend("c", allRunning));
+        RemoteEngines remote = remote(backends);
+
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<StockfishService.EvalResult>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                results.add(callers.submit(() -> remote.evaluateWithBestMove(START,
+                        StockfishService.SearchLimit.toDepth(12), StockfishService.Lane.BATCH)));
+            }
+            for (Future<StockfishService.EvalResult> result : results) {
+                assertEquals(12, result.get(10, TimeUnit.SECONDS).evaluation());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        for (FakeBackend backend : backends) {
+            assertEquals(2, backend.searches.get(), backend.name);
+        }
+        assertEquals(6, remote.getPoolSize());
+        remote.close();
+    }
+
+    @Test
+    public void failsOverWhenAWorkerGoesDown() throws Exception {
+        FakeBackend a = new FakeBackend("a", null);
+        FakeBackend b = new FakeBackend("b", null);
+        RemoteEngines remote = remote(List.of(a, b));
+        StockfishService.SearchLimit limit = StockfishService.SearchLimit.toDepth(10);
+
+        assertEquals("a", remote.evaluateWithBestMove(START, limit, StockfishService.Lane.INTERACTIVE).bestMove());
+        // a's pooled connection breaks with it
+        workers.getFirst().close();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("b", remote.evaluateWithBestMove(START, limit, StockfishService.Lane.INTERACTIVE).bestMove());
+        }
+
+        List<StockfishService.WorkerStats> stats = remote.stats();
+        assertFalse(stats.get(0).up());
+        assertTrue(stats.get(1).up());
+        assertEquals(3, stats.get(1).searches());
+        assertEquals(1, remote.getBatchCapacity());
+
+        workers.get(1).close();
+        assertThrows(IOException.class,
+                () -> remote.evaluateWithBestMove(START, limit, StockfishService.Lane.INTERACTIVE));
+        remote.close();
+    }
+
+    @Test
+    public void resumesALineOnAnotherWorker() throws Exception {
+        FakeBackend a = new FakeBackend("a", null);
+        a.failAtPly = 3;
+        FakeBackend b = new FakeBackend("b", null);
+        RemoteEngines remote = remote(List.of(a, b));
+        List<String> fens = new ArrayList<>();
+        List<String> moves = new ArrayList<>();
+        for (int ply = 0; ply <= 6; ply++) {
+            fens.add(START);
+            moves.add("e2e4");
+        }
+
+        // Limits are handed out once per ply, also for the ply that failed over
+        AtomicInteger limitsAsked = new AtomicInteger();
+        Map<Integer, StockfishService.EvalResult> results = new ConcurrentHashMap<>();
+        remote.evaluateLine(null, fens, moves, 1, 6, ply -> {
+            limitsAsked.incrementAndGet();
+            return StockfishService.SearchLimit.toDepth(ply * 2);
+        }, (ply, result) -> assertNull(results.put(ply, result)));
+
+        assertEquals(6, limitsAsked.get());
+        assertEquals(6, results.size());
+        for (int ply = 1; ply <= 6; ply++) {
+            assertEquals(ply * 2, results.get(ply).evaluation());
+            assertEquals(ply < 3 ? "a" : "b", results.get(ply).bestMove());
+        }
+        assertEquals(List.of(1, 2, 3), a.plies);
+        assertEquals(List.of(3, 4, 5, 6), b.plies);
+        remote.close();
+    }
+
+    @Test
+    public void refusesBadRequestsWithAnErrorAndKeepsTheConnection() throws Exception {
+        FakeBackend backend = new FakeBackend("a", null);
+        EngineWorker worker = worker(backend, Duration.ofSeconds(5));
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), worker.port())) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            assertEquals(EngineProtocol.HELLO, EngineProtocol.receive(in).type());
+
+            // A line break would start a second UCI command on the engine
+            search(out, START + "\nquit", 0);
+            assertEquals(EngineProtocol.ERROR, EngineProtocol.receive(in).type());
+            search(out, "8/8/8/8/8/8/8/8 w - - 0 1", 0);
+            assertEquals(EngineProtocol.ERROR, EngineProtocol.receive(in).type());
+            search(out, START, 7);
+            EngineProtocol.Frame lane = EngineProtocol.receive(in);
+            assertEquals(EngineProtocol.ERROR, lane.type());
+            assertEquals("Unknown lane 7", EngineProtocol.readString(lane.body()));
+
+            search(out, START, StockfishService.Lane.BATCH.ordinal());
+            assertEquals(EngineProtocol.RESULT, EngineProtocol.receive(in).type());
+        }
+        assertEquals(1, backend.searches.get());
+    }
+
+    @Test
+    public void dropsAClientThatGoesSilentMidLine() throws Exception {
+        FakeBackend backend = new FakeBackend("a", null);
+        EngineWorker worker = worker(backend, Duration.ofMillis(300));
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), worker.port())) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            assertEquals(EngineProtocol.HELLO, EngineProtocol.receive(in).type());
+
+            // The line starts, but the limit for its first ply never comes
+            EngineProtocol.send(out, EngineProtocol.LINE, body -> {
+                EngineProtocol.writeString(body, null);
+                EngineProtocol.writeStrings(body, List.of(START, START));
+                EngineProtocol.writeStrings(body, List.of("e2e4"));
+                body.writeInt(1);
+                body.writeInt(1);
+            });
+            assertTrue(backend.linesEnded.await(5, TimeUnit.SECONDS));
+            socket.setSoTimeout(5000);
+            assertEquals(-1, in.read());
+        }
+        assertEquals(List.of(), backend.plies);
+    }
+
+    private static void search(DataOutputStream out, String fen, int lane) throws IOException {
+        EngineProtocol.send(out, EngineProtocol.SEARCH, body -> {
+            EngineProtocol.writeString(body, fen);
+            EngineProtocol.writeLimit(body, StockfishService.SearchLimit.toDepth(10));
+            body.writeByte(lane);
+        });
+    }
+
+    private EngineWorker worker(FakeBackend backend, Duration clientTimeout) throws IOException {
+        EngineWorker worker = new EngineWorker(backend, InetAddress.getLoopbackAddress(), 0, clientTimeout);
+        worker.start();
+        workers.add(worker);
+        return worker;
+    }
+
+    private RemoteEngines remote(List<FakeBackend> backends) throws IOException {
+        List<String> addresses = new ArrayList<>();
+        for (FakeBackend backend : backends) {
+            EngineWorker worker = worker(backend, Duration.ofSeconds(5));
+            addresses.add("localhost:" + worker.port());
+        }
+        RemoteEngines remote = new RemoteEngines(addresses, Duration.ofSeconds(5), new SimpleMeterRegistry());
+        remote.checkWorkers();
+        return remote;
+    }
+
+    /**
+     * Answers with the requested depth as the evaluation and its own name as
+     * the best move, optionally holding every search until a latch opens.
+     */
+    private static final class FakeBackend implements EngineBackend {
+
+        private final String name;
+        private final CountDownLatch latch;
+        private final AtomicInteger searches = new AtomicInteger();
+        private volatile int failAtPly = -1;
+        private final List<Integer> plies = new CopyOnWriteArrayList<>();
+        private final CountDownLatch linesEnded = new CountDownLatch(1);
+
+        FakeBackend(String name, CountDownLatch latch) {
+            this.name = name;
+            this.latch = latch;
+        }
+
+        @Override
+        public StockfishService.EvalResult evaluateWithBestMove(String fen, StockfishService.SearchLimit limit,
+                StockfishService.Lane lane) throws InterruptedException {
+            searches.incrementAndGet();
+            if (latch != null) {
+                latch.countDown();
+                latch.await(10, TimeUnit.SECONDS);
+            }
+            return new StockfishService.EvalResult(limit.depth(), name, List.of(name));
+        }
+
+        @Override
+        public void evaluateLine(String startFen, List<String> fens, List<String> uciMoves, int fromPly, int toPly,
+                IntFunction<StockfishService.SearchLimit> limits,
+                BiConsumer<Integer, StockfishService.EvalResult> onResult) throws IOException {
+            try {
+                for (int ply = fromPly; ply <= toPly; ply++) {
+                    StockfishService.SearchLimit limit = limits.apply(ply);
+                    plies.add(ply);
+                    if (ply == failAtPly) {
+                        throw new IOException("Engine crashed");
+                    }
+                    assertEquals(ply, uciMoves.subList(0, ply).size());
+                    onResult.accept(ply, new StockfishService.EvalResult(limit.depth(), name));
+                }
+            } finally {
+                linesEnded.countDown();
+            }
+        }
+
+        @Override
+        public int getPoolSize() {
+            return 2;
+        }
+
+        @Override
+        public int getBatchCapacity() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchFlightsTest {
+
+    private static final StockfishService.Lane INTERACTIVE = StockfishService.Lane.INTERACTIVE;
+    private static final StockfishService.Lane BATCH = StockfishService.Lane.BATCH;
+    private static final long KEY = 42L;
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void stopCallers() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void sameOrShallowerRequestsWaitForTheRunningSearch() throws Exception {
+        SearchFlights<String> flights = new SearchFlights<>();
+        SearchFlights.Flight<String> leader = new SearchFlights.Flight<>(14, BATCH);
+        assertNull(flights.awaitOrLead(KEY, leader, false));
+        leader.running();
+
+        CompletableFuture<String> same = request(flights, 14, INTERACTIVE, false);
+        CompletableFuture<String> shallower = request(flights, 10, BATCH, true);
+        assertThrows(TimeoutException.class, () -> same.get(200, TimeUnit.MILLISECONDS));
+        assertThrows(TimeoutException.class, () -> shallower.get(200, TimeUnit.MILLISECONDS));
+
+        flights.land(KEY, leader, "e2e4");
+        assertEquals("e2e4", same.get(1, TimeUnit.SECONDS));
+        assertEquals("e2e4", shallower.get(1, TimeUnit.SECONDS));
+        assertEquals(2, flights.coalesced());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void deeperRequestSearchesItself() throws Exception {
+        SearchFlights<String> flights = new SearchFlights<>();
+        SearchFlights.Flight<String> shallow = new SearchFlights.Flight<>(10, INTERACTIVE);
+        assertNull(flights.awaitOrLead(KEY, shallow, false));
+        shallow.running();
+
+        SearchFlights.Flight<String> deep = new SearchFlights.Flight<>(16, INTERACTIVE);
+        assertNull(flights.awaitOrLead(KEY, deep, false));
+        // The deeper search now answers newcomers; the shallow one's end leaves it registered
+        flights.land(KEY, shallow, "d2d4");
+        assertEquals(1, flights.size());
+        CompletableFuture<String> waiter = request(flights, 12, INTERACTIVE, false);
+        assertThrows(TimeoutException.class, () -> waiter.get(200, TimeUnit.MILLISECONDS));
+        flights.land(KEY, deep, "e2e4");
+        assertEquals("e2e4", waiter.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queuedSearchOnlyAnswersCallersWithoutEngineInItsLaneOrBelow() throws Exception {
+        SearchFlights<String> flights = new SearchFlights<>();
+        SearchFlights.Flight<String> queuedBatch = new SearchFlights.Flight<>(14, BATCH);
+        assertNull(flights.awaitOrLead(KEY, queuedBatch, false));
+
+        // An interactive request does not queue behind batch work
+        SearchFlights.Flight<String> interactive = new SearchFlights.Flight<>(14, INTERACTIVE);
+        assertNull(flights.awaitOrLead(KEY, interactive, false));
+
+        // Batch requests may wait for the queued interactive search, unless they hold an engine
+        CompletableFuture<String> batch = request(flights, 14, BATCH, false);
+        assertThrows(TimeoutException.class, () -> batch.get(200, TimeUnit.MILLISECONDS));
+        SearchFlights.Flight<String> holdingEngine = new SearchFlights.Flight<>(14, BATCH);
+        assertNull(flights.awaitOrLead(KEY, holdingEngine, true));
+        flights.land(KEY, holdingEngine, "g1f3");
+
+        flights.land(KEY, interactive, "e2e4");
+        assertEquals("e2e4", batch.get(1, TimeUnit.SECONDS));
+        flights.land(KEY, queuedBatch, "c2c4");
+    }
+
+    @Test
+    public void waitersTakeOverWhenTheLeaderGivesUp() throws Exception {
+        SearchFlights<String> flights = new SearchFlights<>();
+        SearchFlights.Flight<String> leader = new SearchFlights.Flight<>(14, INTERACTIVE);
+        assertNull(flights.awaitOrLead(KEY, leader, false));
+        leader.running();
+
+        CompletableFuture<String> waiter = request(flights, 14, INTERACTIVE, false);
+        assertThrows(TimeoutException.class, () -> waiter.get(200, TimeUnit.MILLISECONDS));
+        flights.land(KEY, leader, null);
+
+        // request() searches itself once it leads
+        assertEquals("own", waiter.get(1, TimeUnit.SECONDS));
+        assertEquals(0, flights.coalesced());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    public void callersHoldingAnEngineDoNotJoinASearchWhoseEngineFailed() throws Exception {
+        SearchFlights<String> flights = new SearchFlights<>();
+        SearchFlights.Flight<String> leader = new SearchFlights.Flight<>(14, INTERACTIVE);
+        assertNull(flights.awaitOrLead(KEY, leader, false));
+        leader.running();
+        // The only engine failed: the leader waits for its replacement, which a batch line may take first
+        leader.queued();
+
+        CompletableFuture<String> withoutEngine = request(flights, 14, INTERACTIVE, false);
+        assertThrows(TimeoutException.class, () -> withoutEngine.get(200, TimeUnit.MILLISECONDS));
+        CompletableFuture<String> holdingEngine = request(flights, 14, BATCH, true);
+        assertEquals("own", holdingEngine.get(1, TimeUnit.SECONDS));
+
+        flights.land(KEY, leader, "e2e4");
+        assertEquals("e2e4", withoutEngine.get(1, TimeUnit.SECONDS));
+    }
+
+    /** A caller that waits for a flight, or else "searches" and lands its own with "own". */
+    private CompletableFuture<String> request(SearchFlights<String> flights, int depth, StockfishService.Lane lane,
+            boolean holdsEngine) {
+        return CompletableFuture.supplyAsync(() -> {
+            SearchFlights.Flight<String> flight = new SearchFlights.Flight<>(depth, lane);
+            try {
+                String shared = flights.awaitOrLead(KEY, flight, holdsEngine);
+                if (shared != null) {
+                    return shared;
+                }
+                flights.land(KEY, flight, "own");
+                return "own";
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, callers);
+    }
+}
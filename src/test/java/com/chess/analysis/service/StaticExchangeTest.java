@@ -0,0 +1,71 @@
+package com.chess.analysis.service;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StaticExchangeTest {
+
+    @Test
+    public void winsUndefendedAndUnderdefendedPieces() {
+        // Black knight e5 hangs to d4
+        assertEquals(3, threat("6k1/8/8/4n3/3P4/8/8/6K1 w - - 0 1"));
+        // Rook c6 defended by b7, but the knight that takes it is worth less
+        assertEquals(2, threat("6k1/1p6/2r5/8/3N4/8/8/6K1 w - - 0 1"));
+    }
+
+    @Test
+    public void defendedTradesWinNothing() {
+        // Nxe5 dxe5: knight for knight
+        assertEquals(0, threat("6k1/5n2/8/4N3/3P4/8/8/6K1 b - - 0 1"));
+        // Only capture available loses the queen for a pawn, so nobody takes
+        assertEquals(0, threat("6k1/8/2p5/3p4/8/8/8/3Q2K1 w - - 0 1"));
+    }
+
+    @Test
+    public void countsXRayAttackers() {
+        // Rxd5 Rxd5 Rxd5: the rook behind on d1 joins once d2 has captured
+        assertEquals(1, threat("3r2k1/8/8/3p4/8/8/3R4/3R2K1 w - - 0 1"));
+    }
+
+    @Test
+    public void kingDoesNotRecaptureOntoAnAttackedSquare() {
+        // Bxf7: Kxf7 would walk into the queen, so the knight is lost
+        assertEquals(3, threat("6k1/5n2/8/8/8/1B6/8/5QK1 w - - 0 1"));
+    }
+
+    @Test
+    public void captureGainIncludesEnPassantAndPromotion() {
+        assertEquals(1, gain("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 1", "e5d6"));
+        assertEquals(8, gain("4k3/P7/8/8/8/8/8/4K3 w - - 0 1", "a7a8q"));
+        assertEquals(13, gain("r3k3/1P6/8/8/8/8/8/4K3 w - - 0 1", "b7a8q"));
+        assertEquals(0, gain("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1", "e2e4"));
+    }
+
+    @Test
+    public void parserTracksMaterialSwingPerMove() {
+        List<Integer> trade = PgnParser.parse("1. e4 d5 2. exd5 Qxd5 *").materialSwings();
+        assertEquals(List.of(0, 0, 0, 1), trade);
+
+        List<Integer> sacrifice = PgnParser.parse("1. e4 e5 2. Qh5 Nc6 3. Qxf7+ Kxf7 *").materialSwings();
+        assertEquals(-8, sacrifice.get(4));
+        assertEquals(9, sacrifice.get(5));
+    }
+
+    private static int threat(String fen) {
+        Board board = new Board();
+        board.loadFromFen(fen);
+        return StaticExchange.threat(board);
+    }
+
+    private static int gain(String fen, String uci) {
+        Board board = new Board();
+        board.loadFromFen(fen);
+        return StaticExchange.captureGain(board, new Move(uci, Side.WHITE));
+    }
+}
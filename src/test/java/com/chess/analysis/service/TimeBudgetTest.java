@@ -0,0 +1,57 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeBudgetTest {
+
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void splitsRemainingTimeByWeight() {
+        double[] weights = { TimeBudget.BOOK, TimeBudget.NORMAL, TimeBudget.NORMAL, TimeBudget.FORCED };
+        TimeBudget budget = new TimeBudget(weights, 3, 2300 * MS, 14);
+
+        long book = budget.limitFor(0, 0).moveTimeMs();
+        long normal = budget.limitFor(1, 0).moveTimeMs();
+
+        // 2300 ms - 4 x 5 ms overhead, over a total weight of 2.3
+        assertEquals(198, book);
+        assertTrue(normal > 4 * book);
+        assertEquals(14, budget.limitFor(1, 0).depth());
+    }
+
+    @Test
+    public void laterPliesAbsorbOverruns() {
+        double[] weights = new double[10];
+        Arrays.fill(weights, TimeBudget.NORMAL);
+        TimeBudget budget = new TimeBudget(weights, 9, 1000 * MS, 14);
+
+        long onSchedule = budget.limitFor(5, 500 * MS).moveTimeMs();
+        long behind = budget.limitFor(5, 800 * MS).moveTimeMs();
+
+        assertTrue(behind < onSchedule);
+        // The remaining plies together never get more than what is left
+        assertTrue(behind * 5 <= 200);
+    }
+
+    @Test
+    public void neverGoesBelowMinimumAfterDeadline() {
+        TimeBudget budget = new TimeBudget(new double[] { 1, 1 }, 1, 100 * MS, 14);
+
+        assertEquals(TimeBudget.MIN_MOVETIME_MS, budget.limitFor(1, 500 * MS).moveTimeMs());
+    }
+
+    @Test
+    public void decidedGamesGetLessTime() {
+        TimeBudget budget = new TimeBudget(new double[] { 1, 1, 1 }, 2, 3000 * MS, 14);
+        long open = budget.limitFor(1, 0).moveTimeMs();
+
+        budget.onResult(new StockfishService.EvalResult(-1200, "e2e4"));
+
+        assertTrue(budget.limitFor(1, 0).moveTimeMs() < open / 2);
+    }
+}
@@ -0,0 +1,139 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UciParserTest {
+
+    @Test
+    public void keepsLastScoredInfoLine() {
+        List<UciParser.Message> messages = pump("""
+                info string NNUE evaluation using nn-1111.nnue
+                info depth 1 seldepth 1 multipv 1 score cp 20 nodes 20 nps 20000 pv e2e4
+                info depth 12 seldepth 17 multipv 1 score cp 31 nodes 51234 nps 900000 hashfull 4 tbhits 0 time 57 pv e2e4 e7e5 g1f3
+                info depth 13 currmove d2d4 currmovenumber 2
+                bestmove e2e4 ponder e7e5
+                """);
+
+        assertEquals(2, messages.size());
+        UciParser.Message bestMove = messages.get(0);
+        assertEquals(UciParser.Type.BESTMOVE, bestMove.type());
+        assertEquals(31, bestMove.result().evaluation());
+        assertEquals("e2e4", bestMove.result().bestMove());
+        assertEquals(List.of("e2e4", "e7e5", "g1f3"), bestMove.result().pv());
+        assertEquals(12, bestMove.depth());
+        assertEquals(51234, bestMove.nodes());
+        assertEquals(UciParser.Type.EOF, messages.get(1).type());
+    }
+
+    @Test
+    public void convertsMateScores() {
+        List<UciParser.Message> messages = pump("""
+                info depth 5 score mate 3 nodes 900 pv d1h5 g7g6 h5f7
+                bestmove d1h5
+                info depth 2 score mate -1 nodes 40 pv g2g4
+                bestmove g2g4
+                """);
+
+        assertEquals(9997, messages.get(0).result().evaluation());
+        assertEquals(-9999, messages.get(1).result().evaluation());
+        assertEquals(List.of("g2g4"), messages.get(1).result().pv());
+    }
+
+    @Test
+    public void resetsBetweenSearches() {
+        List<UciParser.Message> messages = pump("""
+                info depth 9 score cp -45 nodes 7000 pv a7a6
+                bestmove a7a6
+                bestmove (none)
+                """);
+
+        UciParser.Message none = messages.get(1);
+        assertNull(none.result().bestMove());
+        assertEquals(0, none.result().evaluation());
+        assertEquals(List.of(), none.result().pv());
+        assertEquals(0, none.depth());
+    }
+
+    @Test
+    public void reportsEachNewDepthOnlyWhenAsked() {
+        String search = """
+                info depth 1 seldepth 1 multipv 1 score cp 20 nodes 20 pv e2e4
+                info depth 2 seldepth 2 multipv 1 score cp 35 lowerbound nodes 80 pv d2d4
+                info depth 2 seldepth 3 multipv 1 score cp 28 nodes 120 pv e2e4 e7e5
+                info depth 2 seldepth 3 multipv 1 score cp 29 nodes 130 pv e2e4 c7c5
+                info depth 3 currmove g1f3 currmovenumber 3
+                bestmove e2e4 ponder c7c5
+                """;
+        assertEquals(List.of(UciParser.Type.BESTMOVE, UciParser.Type.EOF),
+                pump(search).stream().map(UciParser.Message::type).toList());
+
+        UciParser parser = new UciParser();
+        parser.reportProgress(true);
+        List<UciParser.Message> messages = new ArrayList<>();
+        parser.pump(new ByteArrayInputStream((search + search).getBytes(StandardCharsets.US_ASCII)), messages::add);
+
+        assertEquals(List.of(UciParser.Type.INFO, UciParser.Type.INFO, UciParser.Type.BESTMOVE,
+                UciParser.Type.INFO, UciParser.Type.INFO, UciParser.Type.BESTMOVE, UciParser.Type.EOF),
+                messages.stream().map(UciParser.Message::type).toList());
+        assertEquals(1, messages.get(0).depth());
+        assertEquals("e2e4", messages.get(0).result().bestMove());
+        // The bound at depth 2 is skipped for the exact score that follows it
+        assertEquals(2, messages.get(1).depth());
+        assertEquals(28, messages.get(1).result().evaluation());
+        assertEquals(List.of("e2e4", "e7e5"), messages.get(1).result().pv());
+        assertEquals(120, messages.get(1).nodes());
+        assertEquals(29, messages.get(2).result().evaluation());
+        assertEquals(1, messages.get(3).depth());
+    }
+
+    @Test
+    public void recognisesHandshakeAndCrlf() {
+        List<UciParser.Message> messages = pump("id name Stockfish 17\r\nuciok\r\nreadyok\r\n"
+                + "info depth 3 score cp 12 upperbound nodes 99 pv c2c4\r\nbestmove c2c4\r\n");
+
+        assertEquals(UciParser.Type.UCIOK, messages.get(0).type());
+        assertEquals(UciParser.Type.READYOK, messages.get(1).type());
+        assertEquals(12, messages.get(2).result().evaluation());
+        assertEquals("c2c4", messages.get(2).result().bestMove());
+        assertEquals(List.of("c2c4"), messages.get(2).result().pv());
+    }
+
+    @Test
+    public void handlesLinesSplitAcrossReadsAndLongerThanTheBuffer() {
+        StringBuilder longPv = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            longPv.append(i % 2 == 0 ? " g1f3" : " g8f6");
+            expected.add(i % 2 == 0 ? "g1f3" : "g8f6");
+        }
+        byte[] bytes = ("info depth 30 score cp 5 nodes 1 pv" + longPv + "\nbestmove g1f3\n")
+                .getBytes(StandardCharsets.US_ASCII);
+
+        // Hands out at most 7 bytes per read
+        InputStream trickle = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        List<UciParser.Message> messages = new ArrayList<>();
+        new UciParser().pump(trickle, messages::add);
+
+        assertEquals(expected, messages.get(0).result().pv());
+        assertEquals(30, messages.get(0).depth());
+    }
+
+    private static List<UciParser.Message> pump(String output) {
+        List<UciParser.Message> messages = new ArrayList<>();
+        new UciParser().pump(new ByteArrayInputStream(output.getBytes(StandardCharsets.US_ASCII)), messages::add);
+        return messages;
+    }
+}
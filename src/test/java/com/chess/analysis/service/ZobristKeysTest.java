@@ -0,0 +1,31 @@
+package com.chess.analysis.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZobristKeysTest {
+
+    private static final String AFTER_E4 = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+
+    @Test
+    public void ignoresMoveCounters() {
+        assertEquals(ZobristKeys.ofFen(AFTER_E4),
+                ZobristKeys.ofFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 12 40"));
+    }
+
+    @Test
+    public void distinguishesSideCastlingAndEnPassant() {
+        long key = ZobristKeys.ofFen(AFTER_E4);
+
+        assertNotEquals(key, ZobristKeys.ofFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1"));
+        assertNotEquals(key, ZobristKeys.ofFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b Kkq e3 0 1"));
+        assertNotEquals(key, ZobristKeys.ofFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1"));
+    }
+
+    @Test
+    public void distinguishesPiecePlacement() {
+        assertNotEquals(ZobristKeys.ofFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1"),
+                ZobristKeys.ofFen("4k3/8/8/8/8/8/8/3K4 w - - 0 1"));
+    }
+}